@@ -0,0 +1,33 @@
+package me.samthompson.bubbleactions;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The label check every view that receives ACTION_DRAG_STARTED runs. The labels are copies, as
+ * they are after being sent through the window manager.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class DragUtilsBenchmarks {
+
+    private final CharSequence ownLabel = new String(DragUtils.DRAG_LABEL);
+    private final CharSequence otherLabel = new String("com.example.SomeOtherDrag");
+
+    @Benchmark
+    public boolean ownDrag() {
+        return DragUtils.isDragForMe(ownLabel);
+    }
+
+    @Benchmark
+    public boolean otherDrag() {
+        return DragUtils.isDragForMe(otherLabel);
+    }
+}
@@ -0,0 +1,40 @@
+package me.samthompson.bubbleactions;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The validation fromMenu runs on a full menu when it is parsed.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class MenuValidatorBenchmarks {
+
+    private final Object[] icons = new Object[RadialLayout.MAX_ACTIONS];
+    private final CharSequence[] titles = new CharSequence[RadialLayout.MAX_ACTIONS];
+    private final int[] ids = new int[RadialLayout.MAX_ACTIONS];
+
+    public MenuValidatorBenchmarks() {
+        for (int i = 0; i < RadialLayout.MAX_ACTIONS; i++) {
+            icons[i] = new Object();
+            titles[i] = "Action " + i;
+            ids[i] = i + 1;
+        }
+    }
+
+    @Benchmark
+    public int validateMenu() {
+        MenuValidator.validateSize(ids.length);
+        for (int i = 0; i < ids.length; i++) {
+            MenuValidator.validateItem(false, icons[i], titles[i], ids[i]);
+        }
+        return ids.length;
+    }
+}
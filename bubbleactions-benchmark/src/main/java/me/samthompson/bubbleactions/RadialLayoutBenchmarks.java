@@ -0,0 +1,83 @@
+package me.samthompson.bubbleactions;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The placement math of setupOverlay and the hit testing of drag locations. The legacy benchmark
+ * is the trigonometry setupOverlay did before RadialLayout, kept as a baseline.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class RadialLayoutBenchmarks {
+
+    private static final float WIDTH = 1080;
+    private static final float HEIGHT = 1920;
+    private static final float START_DISTANCE = 168;
+    private static final float STOP_DISTANCE = 288;
+    private static final float BUBBLE_DIMENSION = 156;
+    private static final int POINTS = 1024;
+
+    @Param({"3", "5", "12"})
+    public int numActions;
+
+    private final float[] originX = new float[POINTS];
+    private final float[] originY = new float[POINTS];
+    private final float[] legacyX = new float[RadialLayout.MAX_ACTIONS];
+    private final float[] legacyY = new float[RadialLayout.MAX_ACTIONS];
+    private RadialLayout layout;
+    private int point;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(7);
+        for (int i = 0; i < POINTS; i++) {
+            originX[i] = random.nextFloat() * WIDTH;
+            originY[i] = random.nextFloat() * HEIGHT;
+        }
+
+        layout = new RadialLayout(START_DISTANCE, STOP_DISTANCE, BUBBLE_DIMENSION);
+        layout.layout(WIDTH / 2, HEIGHT / 2, 0, 0, WIDTH, HEIGHT, numActions);
+    }
+
+    private int nextPoint() {
+        point = (point + 1) & (POINTS - 1);
+        return point;
+    }
+
+    @Benchmark
+    public float layout() {
+        int i = nextPoint();
+        layout.layout(originX[i], originY[i], 0, 0, WIDTH, HEIGHT, numActions);
+        return layout.unitX[0];
+    }
+
+    @Benchmark
+    public float legacyLayout() {
+        if (numActions > RadialLayout.INNER_RING_CAPACITY) {
+            // the legacy math only supported a single ring
+            return 0;
+        }
+
+        int i = nextPoint();
+        LegacyRadialMath.layout(originX[i], originY[i], WIDTH, HEIGHT, numActions,
+                STOP_DISTANCE, BUBBLE_DIMENSION, legacyX, legacyY);
+        return legacyX[0];
+    }
+
+    @Benchmark
+    public int hitTest() {
+        int i = nextPoint();
+        return layout.hitTest(originX[i] - WIDTH / 2, originY[i] - HEIGHT / 2);
+    }
+}
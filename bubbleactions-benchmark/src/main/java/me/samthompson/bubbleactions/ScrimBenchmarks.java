@@ -0,0 +1,44 @@
+package me.samthompson.bubbleactions;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The per frame work of the background dim, which replaced BackgroundAlphaTypeEvaluator.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ScrimBenchmarks {
+
+    private static final int TRANSPARENT = 0x00000000;
+    private static final int DARKENED = 0x77000000;
+    private static final float STEP = 1f / 64;
+
+    private final Scrim scrim = new Scrim(TRANSPARENT, DARKENED);
+    private float fraction;
+
+    private float nextFraction() {
+        fraction += STEP;
+        if (fraction > 1f) {
+            fraction = 0f;
+        }
+        return fraction;
+    }
+
+    @Benchmark
+    public int blendArgb() {
+        return Scrim.blendArgb(TRANSPARENT, DARKENED, nextFraction());
+    }
+
+    @Benchmark
+    public boolean setFraction() {
+        return scrim.setFraction(nextFraction());
+    }
+}
@@ -6,7 +6,9 @@ import android.view.View;
 import android.widget.Toast;
 
 import me.samthompson.bubbleactions.BubbleActions;
+import me.samthompson.bubbleactions.LongPressTrigger;
 import me.samthompson.bubbleactions.MenuCallback;
+import me.samthompson.bubbleactions.ViewActionsProvider;
 
 public class MenuActivity extends AppCompatActivity {
 
@@ -15,10 +17,11 @@ public class MenuActivity extends AppCompatActivity {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_menu);
 
-        findViewById(R.id.text_view).setOnLongClickListener(new View.OnLongClickListener() {
+        // the actions are set up as soon as the text is touched, and shown after a short hold
+        LongPressTrigger.attach(findViewById(R.id.text_view), new ViewActionsProvider() {
             @Override
-            public boolean onLongClick(final View v) {
-                BubbleActions.on(v)
+            public boolean onCreateViewActions(BubbleActions bubbleActions, final View v) {
+                bubbleActions
                         .fromMenu(R.menu.menu_actions, new MenuCallback() {
                             @Override
                             public void doAction(int itemId) {
@@ -34,10 +37,9 @@ public class MenuActivity extends AppCompatActivity {
                                         break;
                                 }
                             }
-                        })
-                        .show();
+                        });
                 return true;
             }
-        });
+        }).withHoldTimeout(300);
     }
 }
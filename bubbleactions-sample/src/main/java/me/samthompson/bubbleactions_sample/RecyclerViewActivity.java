@@ -10,8 +10,12 @@ import android.view.ViewGroup;
 import android.widget.TextView;
 import android.widget.Toast;
 
+import me.samthompson.bubbleactions.ActionContext;
+import me.samthompson.bubbleactions.ActionSet;
 import me.samthompson.bubbleactions.BubbleActions;
-import me.samthompson.bubbleactions.Callback;
+import me.samthompson.bubbleactions.ContextCallback;
+import me.samthompson.bubbleactions.ItemActionsProvider;
+import me.samthompson.bubbleactions.RecyclerViewAttachment;
 
 public class RecyclerViewActivity extends AppCompatActivity {
 
@@ -19,9 +23,48 @@ public class RecyclerViewActivity extends AppCompatActivity {
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_recycler_view);
+        BubbleActions.prewarm(this);
         RecyclerView recyclerView = (RecyclerView) findViewById(R.id.recycler_view);
         recyclerView.setLayoutManager(new LinearLayoutManager(this));
+
+        // the actions are built once and shared by every item
+        final ActionSet actions = new ActionSet.Builder(this)
+                .addAction("Star", R.drawable.bubble_star, new ContextCallback() {
+                    @Override
+                    public void doAction(ActionContext context) {
+                        showToast(context, "Star");
+                    }
+                })
+                .addAction("Share", R.drawable.bubble_share, new ContextCallback() {
+                    @Override
+                    public void doAction(ActionContext context) {
+                        showToast(context, "Share");
+                    }
+                })
+                .addAction("Hide", R.drawable.bubble_hide, new ContextCallback() {
+                    @Override
+                    public void doAction(ActionContext context) {
+                        showToast(context, "Hide");
+                    }
+                })
+                .build();
+
         recyclerView.setAdapter(new Adapter());
+
+        // a single listener shows the actions on any long pressed item
+        RecyclerViewAttachment.attach(recyclerView, new ItemActionsProvider() {
+            @Override
+            public boolean onCreateItemActions(BubbleActions bubbleActions, int adapterPosition) {
+                bubbleActions.withActions(actions);
+                return true;
+            }
+        });
+    }
+
+    static void showToast(ActionContext context, String action) {
+        // the position is looked up when the action is dropped on, so it is always current
+        int index = context.getAdapterPosition();
+        Toast.makeText(context.getView().getContext(), action + " pressed on index " + index + "!", Toast.LENGTH_SHORT).show();
     }
 
     static class Adapter extends RecyclerView.Adapter<ViewHolder> {
@@ -49,35 +92,6 @@ public class RecyclerViewActivity extends AppCompatActivity {
         public ViewHolder(final View itemView) {
             super(itemView);
             textView = (TextView) itemView.findViewById(R.id.item_text);
-
-            final int index = getAdapterPosition();
-            // on long click, show the bubble actions
-            itemView.setOnLongClickListener(new View.OnLongClickListener() {
-                @Override
-                public boolean onLongClick(final View v) {
-                    BubbleActions.on(v)
-                            .addAction("Star", R.drawable.bubble_star, new Callback() {
-                                @Override
-                                public void doAction() {
-                                    Toast.makeText(v.getContext(), "Star pressed on index " + index + "!", Toast.LENGTH_SHORT).show();
-                                }
-                            })
-                            .addAction("Share", R.drawable.bubble_share, new Callback() {
-                                @Override
-                                public void doAction() {
-                                    Toast.makeText(v.getContext(), "Share pressed on index " + index + "!", Toast.LENGTH_SHORT).show();
-                                }
-                            })
-                            .addAction("Hide", R.drawable.bubble_hide, new Callback() {
-                                @Override
-                                public void doAction() {
-                                    Toast.makeText(v.getContext(), "Hide pressed on index " + index + "!", Toast.LENGTH_SHORT).show();
-                                }
-                            })
-                            .show();
-                    return false;
-                }
-            });
         }
     }
 }
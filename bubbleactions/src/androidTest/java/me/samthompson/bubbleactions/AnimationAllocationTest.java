@@ -0,0 +1,162 @@
+package me.samthompson.bubbleactions;
+
+import android.graphics.Point;
+import android.os.Debug;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.annotation.UiThreadTest;
+import android.support.test.runner.AndroidJUnit4;
+import android.view.View;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that an interaction allocates nothing once the overlay is set up: showing, hovering,
+ * dropping, and hiding through the same path as a real hide, which removes the overlay and reports
+ * the metrics.
+ */
+@RunWith(AndroidJUnit4.class)
+public class AnimationAllocationTest {
+
+    private OverlayFixture fixture;
+    private BubbleActionOverlay overlay;
+    private BubbleActions bubbleActions;
+    private int dropped = 0;
+    private int reported = 0;
+
+    private final Callback callback = new Callback() {
+        @Override
+        public void doAction() {
+            dropped++;
+        }
+    };
+
+    private final TouchPointProvider center = new TouchPointProvider() {
+        @Override
+        public boolean getTouchPoint(View root, Point outPoint) {
+            outPoint.set((int) OverlayFixture.ORIGIN_X, (int) OverlayFixture.ORIGIN_Y);
+            return true;
+        }
+    };
+
+    private final MetricsListener metricsListener = new MetricsListener() {
+        @Override
+        public void onInteractionMetrics(InteractionMetrics metrics) {
+            reported++;
+        }
+    };
+
+    @Before
+    public void setUp() {
+        fixture = OverlayFixture.detached(InstrumentationRegistry.getTargetContext()).withActions(callback);
+        overlay = fixture.overlay;
+        // BubbleActions add the overlay themselves when they are shown
+        fixture.root.removeView(overlay);
+        fixture.root.measure(View.MeasureSpec.makeMeasureSpec(OverlayFixture.WIDTH, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(OverlayFixture.HEIGHT, View.MeasureSpec.EXACTLY));
+        fixture.root.layout(0, 0, OverlayFixture.WIDTH, OverlayFixture.HEIGHT);
+        // reporting metrics must not allocate either
+        bubbleActions = fixture.bubbleActions
+                .withInputMode(BubbleActions.INPUT_MODE_TOUCH)
+                .withTouchPointProvider(center)
+                .withMetricsListener(metricsListener);
+        // the test drives the gesture, there is none to take over
+        bubbleActions.touchesForwarded = true;
+    }
+
+    @Test
+    @UiThreadTest
+    @SuppressWarnings("deprecation")
+    public void testInteractionCycleDoesNotAllocate() {
+        // warm up
+        assertTrue(bubbleActions.prepare());
+        runCycle();
+
+        assertTrue(bubbleActions.prepare());
+        Debug.resetThreadAllocCount();
+        Debug.startAllocCounting();
+        runCycle();
+        Debug.stopAllocCounting();
+
+        assertEquals(0, Debug.getThreadAllocCount());
+        assertEquals(2, dropped);
+        assertEquals(2, reported);
+    }
+
+    @Test
+    @UiThreadTest
+    @SuppressWarnings("deprecation")
+    public void testCanvasInteractionCycleDoesNotAllocate() {
+        bubbleActions.withRenderMode(BubbleActions.RENDER_MODE_CANVAS);
+
+        // warm up
+        assertTrue(bubbleActions.prepare());
+        runCanvasCycle();
+
+        assertTrue(bubbleActions.prepare());
+        Debug.resetThreadAllocCount();
+        Debug.startAllocCounting();
+        runCanvasCycle();
+        Debug.stopAllocCounting();
+
+        assertEquals(0, Debug.getThreadAllocCount());
+        assertEquals(2, dropped);
+        assertEquals(2, reported);
+    }
+
+    /**
+     * show -> hover on and off a bubble -> hover and drop on another bubble -> hide, starting
+     * from a prepared overlay
+     */
+    private void runCycle() {
+        show();
+
+        fixture.hover(0);
+        fixture.bubbleView(0).selectAnimator.end();
+        overlay.clearHover();
+        fixture.bubbleView(0).selectAnimator.end();
+
+        assertTrue(fixture.drop(1));
+
+        hide();
+    }
+
+    /**
+     * The same cycle as {@link #runCycle()}, driven by drag locations
+     */
+    private void runCanvasCycle() {
+        show();
+
+        CanvasBubbleRenderer renderer = overlay.canvasRenderer;
+        overlay.onDragLocation(renderer.getBubbleCenterX(0), renderer.getBubbleCenterY(0));
+        overlay.canvasSelectAnimator.end();
+        overlay.clearHover();
+        overlay.canvasSelectAnimator.end();
+
+        overlay.onDragLocation(renderer.getBubbleCenterX(1), renderer.getBubbleCenterY(1));
+        overlay.canvasSelectAnimator.end();
+        assertTrue(overlay.dropOnHoveredSlot());
+
+        hide();
+    }
+
+    private void show() {
+        bubbleActions.show();
+        overlay.showAnimator.end();
+        assertTrue(bubbleActions.isShowing());
+    }
+
+    /**
+     * Hide the way the end of a gesture does, so the hide animation ends in removing the overlay
+     * and reporting the metrics.
+     */
+    private void hide() {
+        fixture.animateHide();
+        assertNull(overlay.getParent());
+    }
+}
@@ -0,0 +1,214 @@
+package me.samthompson.bubbleactions;
+
+import android.app.Activity;
+import android.app.Instrumentation;
+import android.graphics.Point;
+import android.os.SystemClock;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.annotation.UiThreadTest;
+import android.support.test.rule.ActivityTestRule;
+import android.support.test.runner.AndroidJUnit4;
+import android.view.MotionEvent;
+import android.view.View;
+import android.view.WindowManager;
+import android.widget.FrameLayout;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(AndroidJUnit4.class)
+public class OverlayPoolTest {
+
+    private static final long SHOW_TIMEOUT_MILLIS = 5000;
+
+    @Rule
+    public final ActivityTestRule<Activity> activityRule = new ActivityTestRule<>(Activity.class);
+
+    private final Instrumentation instrumentation = InstrumentationRegistry.getInstrumentation();
+    private CountingContext context;
+    private FrameLayout root;
+    private View target;
+    // a root of its own window in the activity, so BubbleActions are shown in it
+    private FrameLayout windowRoot;
+    private CountingContext windowContext;
+
+    @Before
+    public void setUp() {
+        context = new CountingContext(InstrumentationRegistry.getTargetContext());
+        root = new FrameLayout(context);
+        target = new View(context);
+        root.addView(target);
+    }
+
+    @After
+    public void tearDown() {
+        if (windowRoot == null) {
+            return;
+        }
+
+        instrumentation.runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                activityRule.getActivity().getWindowManager().removeViewImmediate(windowRoot);
+            }
+        });
+    }
+
+    @Test
+    public void testSecondShowDoesNotInflate() {
+        instrumentation.runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                Activity activity = activityRule.getActivity();
+                windowContext = new CountingContext(activity);
+                windowRoot = new FrameLayout(windowContext);
+                windowRoot.addView(new View(windowContext));
+                activity.getWindowManager().addView(windowRoot, new WindowManager.LayoutParams());
+            }
+        });
+        instrumentation.waitForIdleSync();
+
+        BubbleActionOverlay first = showAndHide();
+        assertEquals(1, windowContext.overlays);
+        assertTrue(windowContext.inflations > 0);
+
+        windowContext.inflations = 0;
+        windowContext.overlays = 0;
+        BubbleActionOverlay second = showAndHide();
+        assertEquals(0, windowContext.inflations);
+        assertEquals(0, windowContext.overlays);
+        assertSame(first, second);
+    }
+
+    @Test
+    @UiThreadTest
+    public void testOverlayIsReusedPerRoot() {
+        BubbleActionOverlay first = OverlayPool.acquire(root);
+        BubbleActionOverlay second = OverlayPool.acquire(root);
+        assertSame(first, second);
+    }
+
+    @Test
+    @UiThreadTest
+    public void testOverlayInUseIsNotHandedOut() {
+        BubbleActionOverlay first = OverlayPool.acquire(root);
+        root.addView(first);
+        BubbleActionOverlay second = OverlayPool.acquire(root);
+        assertNotSame(first, second);
+        root.removeView(first);
+    }
+
+    @Test
+    @UiThreadTest
+    public void testReleaseDropsOverlay() {
+        BubbleActionOverlay first = OverlayPool.acquire(root);
+        OverlayPool.release(root);
+        BubbleActionOverlay second = OverlayPool.acquire(root);
+        assertNotSame(first, second);
+    }
+
+    @Test
+    public void testOverlayBuiltInBackgroundIsPooled() throws InterruptedException {
+        final BubbleActionOverlay[] built = new BubbleActionOverlay[1];
+        Thread worker = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                BackgroundInflater inflater = new BackgroundInflater(context);
+                built[0] = new BubbleActionOverlay(context, inflater);
+                built[0].prewarm(inflater);
+            }
+        });
+        worker.start();
+        worker.join();
+
+        // the worker must not touch the inflater of the context
+        assertEquals(0, context.inflations);
+        assertTrue(OverlayPool.offer(root, built[0]));
+        assertSame(built[0], OverlayPool.acquire(root));
+    }
+
+    @Test
+    @UiThreadTest
+    public void testOfferIsDroppedIfRootHasOverlay() {
+        BubbleActionOverlay first = OverlayPool.acquire(root);
+        assertFalse(OverlayPool.offer(root, new BubbleActionOverlay(context)));
+        assertSame(first, OverlayPool.acquire(root));
+    }
+
+    /**
+     * Show BubbleActions on the window root, wait for the overlay to be laid out and animated in,
+     * then cancel the gesture and run the hide animation to its end.
+     *
+     * @return the overlay that was added to the root
+     */
+    private BubbleActionOverlay showAndHide() {
+        final View windowTarget = windowRoot.getChildAt(0);
+        instrumentation.runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                BubbleActions.on(windowTarget)
+                        .withInputMode(BubbleActions.INPUT_MODE_TOUCH)
+                        .withTouchPointProvider(new CenterTouchPoint())
+                        .addAction("Star", android.R.drawable.star_on, new NoopCallback())
+                        .show();
+            }
+        });
+
+        final BubbleActionOverlay[] shown = new BubbleActionOverlay[1];
+        long timeout = SystemClock.uptimeMillis() + SHOW_TIMEOUT_MILLIS;
+        while (shown[0] == null && SystemClock.uptimeMillis() < timeout) {
+            // the overlay is set up and animated in after its first layout pass
+            instrumentation.waitForIdleSync();
+            instrumentation.runOnMainSync(new Runnable() {
+                @Override
+                public void run() {
+                    View child = windowRoot.getChildAt(windowRoot.getChildCount() - 1);
+                    if (child instanceof BubbleActionOverlay && ((BubbleActionOverlay) child).showAnimator.isStarted()) {
+                        shown[0] = (BubbleActionOverlay) child;
+                    }
+                }
+            });
+        }
+        assertTrue("the overlay was not shown", shown[0] != null);
+
+        instrumentation.runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                BubbleActionOverlay overlay = shown[0];
+                overlay.showAnimator.end();
+                long now = SystemClock.uptimeMillis();
+                MotionEvent cancel = MotionEvent.obtain(now, now, MotionEvent.ACTION_CANCEL, 0, 0, 0);
+                // the overlay took the gesture over, so the cancel reaches it through the root
+                windowRoot.dispatchTouchEvent(cancel);
+                cancel.recycle();
+                overlay.showAnimator.end();
+            }
+        });
+        assertNull(shown[0].getParent());
+        return shown[0];
+    }
+
+    private static class CenterTouchPoint implements TouchPointProvider {
+        @Override
+        public boolean getTouchPoint(View root, Point outPoint) {
+            outPoint.set(root.getWidth() / 2, root.getHeight() / 2);
+            return true;
+        }
+    }
+
+    private static class NoopCallback implements Callback {
+        @Override
+        public void doAction() {
+        }
+    }
+}
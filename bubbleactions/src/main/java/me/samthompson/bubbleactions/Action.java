@@ -9,11 +9,58 @@ import android.graphics.drawable.Drawable;
 class Action {
     CharSequence actionName;
     Drawable bubble;
+    // the drawable resource the bubble was loaded from, or 0, see BubbleSpriteCache
+    int bubbleRes;
     Callback callback;
+    ContextCallback contextCallback;
+    MenuCallback menuCallback;
+    int itemId;
+    // lazy actions get their label and bubble from the provider every time they are shown
+    ActionProvider provider;
+    ActionContent content;
 
     Action(CharSequence actionName, Drawable bubble, Callback callback) {
         this.actionName = actionName;
         this.bubble = bubble;
         this.callback = callback;
     }
-}
\ No newline at end of file
+
+    Action(CharSequence actionName, Drawable bubble, ContextCallback contextCallback) {
+        this.actionName = actionName;
+        this.bubble = bubble;
+        this.contextCallback = contextCallback;
+    }
+
+    Action(CharSequence actionName, ActionProvider provider, Callback callback) {
+        this.actionName = actionName;
+        this.provider = provider;
+        this.callback = callback;
+    }
+
+    Action(CharSequence actionName, Drawable bubble, MenuCallback menuCallback, int itemId) {
+        this.actionName = actionName;
+        this.bubble = bubble;
+        this.menuCallback = menuCallback;
+        this.itemId = itemId;
+    }
+
+    /**
+     * Copy only the callbacks of an action, so it can still be run after the original is released.
+     */
+    Action(Action action) {
+        this.callback = action.callback;
+        this.contextCallback = action.contextCallback;
+        this.menuCallback = action.menuCallback;
+        this.itemId = action.itemId;
+    }
+
+    void doAction(ActionContext context) {
+        if (callback != null) {
+            callback.doAction();
+        } else if (menuCallback != null) {
+            menuCallback.doAction(itemId);
+        } else {
+            contextCallback.doAction(context);
+        }
+    }
+}
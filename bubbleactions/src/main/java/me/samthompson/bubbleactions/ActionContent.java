@@ -0,0 +1,110 @@
+package me.samthompson.bubbleactions;
+
+import android.graphics.drawable.Drawable;
+import android.os.Handler;
+import android.os.Looper;
+
+/**
+ * The content of a lazy action for a single showing of BubbleActions, handed to its
+ * {@link ActionProvider}. The setters can be called from any thread; content set off the main
+ * thread is applied on the next pass of the main looper. Content that arrives after the
+ * BubbleActions were hidden is dropped.
+ */
+public final class ActionContent {
+
+    private static final String TAG = ActionContent.class.getSimpleName();
+
+    private static final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    private final ActionContext actionContext;
+
+    // only touched on the main thread, and cleared when cancelled so a slow loader holding on to
+    // the content does not keep the views alive
+    private BubbleActions bubbleActions;
+    private Action action;
+    private volatile boolean cancelled = false;
+
+    ActionContent(BubbleActions bubbleActions, Action action, ActionContext actionContext) {
+        this.bubbleActions = bubbleActions;
+        this.action = action;
+        this.actionContext = actionContext;
+    }
+
+    /**
+     * @return the showing of BubbleActions the content is for
+     */
+    public ActionContext getActionContext() {
+        return actionContext;
+    }
+
+    /**
+     * @return true once the BubbleActions have been hidden, content set from then on is dropped.
+     * Slow loaders can check this to stop early.
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Replace the placeholder label of the action.
+     *
+     * @param label the label displayed above the bubble
+     */
+    public void setLabel(CharSequence label) {
+        if (label == null) {
+            throw new IllegalArgumentException(TAG + ": the label must not be null.");
+        }
+
+        update(label, null);
+    }
+
+    /**
+     * Replace the placeholder bubble of the action.
+     *
+     * @param drawable the content of the bubble
+     */
+    public void setDrawable(Drawable drawable) {
+        if (drawable == null) {
+            throw new IllegalArgumentException(TAG + ": the drawable cannot resolve to null.");
+        }
+
+        update(null, drawable);
+    }
+
+    private void update(final CharSequence label, final Drawable drawable) {
+        if (Looper.myLooper() == Looper.getMainLooper()) {
+            apply(label, drawable);
+            return;
+        }
+
+        mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                apply(label, drawable);
+            }
+        });
+    }
+
+    private void apply(CharSequence label, Drawable drawable) {
+        if (cancelled) {
+            return;
+        }
+
+        if (label != null) {
+            action.actionName = label;
+        }
+        if (drawable != null) {
+            action.bubble = drawable;
+        }
+        bubbleActions.onActionContentChanged(action);
+    }
+
+    /**
+     * Drop any content that arrives from now on. Must be called on the main thread.
+     */
+    void cancel() {
+        cancelled = true;
+        bubbleActions = null;
+        action = null;
+    }
+}
@@ -0,0 +1,64 @@
+package me.samthompson.bubbleactions;
+
+import android.view.View;
+
+/**
+ * Describes a single showing of BubbleActions. It is passed to a {@link ContextCallback} so that
+ * one set of actions can be shared by many views.
+ */
+public final class ActionContext {
+
+    /**
+     * Returned by {@link #getAdapterPosition()} when the position is unknown.
+     */
+    public static final int NO_POSITION = -1;
+
+    View view;
+    // set when the actions were shown on an item of a RecyclerView. Not typed as
+    // RecyclerViewAttachment, so this class does not depend on the optional recyclerview library.
+    PositionSource positionSource;
+
+    ActionContext(View view) {
+        this.view = view;
+    }
+
+    /**
+     * @return a copy that keeps describing this showing after this context is reset or released
+     */
+    ActionContext copy() {
+        ActionContext copy = new ActionContext(view);
+        copy.positionSource = positionSource;
+        return copy;
+    }
+
+    /**
+     * @return the view that the BubbleActions were shown on
+     */
+    public View getView() {
+        return view;
+    }
+
+    /**
+     * Get the adapter position of the item the actions were shown on, when they were shown by
+     * {@link RecyclerViewAttachment#attach(android.support.v7.widget.RecyclerView, ItemActionsProvider)}.
+     * It is looked up on every call, so it is correct even if items were added or removed while
+     * the actions were shown.
+     *
+     * @return the adapter position, or {@link #NO_POSITION} if the actions were not shown on an
+     * item or the item has been removed
+     */
+    public int getAdapterPosition() {
+        return positionSource != null ? positionSource.getAdapterPosition(view) : NO_POSITION;
+    }
+
+    /**
+     * Looks up the current adapter position of an item view.
+     */
+    interface PositionSource {
+
+        /**
+         * @return the adapter position of the view, or {@link #NO_POSITION}
+         */
+        int getAdapterPosition(View view);
+    }
+}
@@ -0,0 +1,18 @@
+package me.samthompson.bubbleactions;
+
+/**
+ * Supplies the label and drawable of an action lazily, see
+ * {@link BubbleActions#addLazyAction(CharSequence, ActionProvider, Callback)}. The overlay is
+ * shown straight away with a placeholder bubble, which is replaced as soon as the content arrives,
+ * even while the bubbles are fanning out.
+ */
+public interface ActionProvider {
+
+    /**
+     * Called on the main thread every time the actions are shown. The content can be set right
+     * away, or later from any thread, for example once an icon has been loaded in the background.
+     *
+     * @param content the content of the action for this showing of BubbleActions
+     */
+    void provideAction(ActionContent content);
+}
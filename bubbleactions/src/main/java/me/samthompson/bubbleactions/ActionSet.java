@@ -0,0 +1,105 @@
+package me.samthompson.bubbleactions;
+
+import android.content.Context;
+import android.graphics.drawable.Drawable;
+import android.support.v4.content.res.ResourcesCompat;
+
+/**
+ * An immutable set of actions that can be shared between every view and every showing of
+ * BubbleActions. Drawables are resolved once when the set is built. Because the set is shared,
+ * its callbacks are {@link ContextCallback}s, which are told which view the actions were shown on.
+ * <pre>
+ * ActionSet actions = new ActionSet.Builder(context)
+ *         .addAction("Star", R.drawable.bubble_star, starCallback)
+ *         .build();
+ *
+ * BubbleActions.on(view).withActions(actions).show();
+ * </pre>
+ */
+public final class ActionSet {
+
+    private static final String TAG = ActionSet.class.getSimpleName();
+
+    final Action[] actions;
+
+    private ActionSet(Action[] actions) {
+        this.actions = actions;
+    }
+
+    /**
+     * @return the number of actions in the set
+     */
+    public int size() {
+        return actions.length;
+    }
+
+    /**
+     * Builds an {@link ActionSet}.
+     */
+    public static final class Builder {
+
+        private final Context context;
+        private final Action[] actions = new Action[BubbleActionOverlay.MAX_ACTIONS];
+        private int numActions = 0;
+
+        /**
+         * @param context used to resolve drawable resources. The context is not kept by the built
+         *                set.
+         */
+        public Builder(Context context) {
+            this.context = context;
+        }
+
+        /**
+         * Add an action using a drawable resource. See
+         * {@link BubbleActions#addAction(CharSequence, int, Callback)} for details.
+         *
+         * @param actionName  The label displayed above the bubble action
+         * @param drawableRes The content of the bubble action
+         * @param callback    A callback run on the main thread when the action is selected
+         * @return the Builder instance that called this method
+         */
+        public Builder addAction(CharSequence actionName, int drawableRes, ContextCallback callback) {
+            addAction(actionName, ResourcesCompat.getDrawable(context.getResources(), drawableRes, context.getTheme()), callback);
+            actions[numActions - 1].bubbleRes = drawableRes;
+            return this;
+        }
+
+        /**
+         * Add an action using a drawable. See
+         * {@link BubbleActions#addAction(CharSequence, int, Callback)} for details.
+         *
+         * @param actionName The label displayed above the bubble action
+         * @param drawable   The content of the bubble action
+         * @param callback   A callback run on the main thread when the action is selected
+         * @return the Builder instance that called this method
+         */
+        public Builder addAction(CharSequence actionName, Drawable drawable, ContextCallback callback) {
+            if (numActions >= actions.length) {
+                throw new IllegalStateException(TAG + ": cannot add more than " + BubbleActionOverlay.MAX_ACTIONS + " actions.");
+            }
+
+            if (drawable == null) {
+                throw new IllegalArgumentException(TAG + ": the drawable cannot resolve to null.");
+            }
+
+            if (callback == null) {
+                throw new IllegalArgumentException(TAG + ": the callback must not be null.");
+            }
+
+            actions[numActions] = new Action(actionName, drawable, callback);
+            numActions++;
+
+            return this;
+        }
+
+        /**
+         * @return a new immutable ActionSet containing the added actions
+         */
+        public ActionSet build() {
+            Action[] result = new Action[numActions];
+            System.arraycopy(actions, 0, result, 0, numActions);
+            return new ActionSet(result);
+        }
+    }
+}
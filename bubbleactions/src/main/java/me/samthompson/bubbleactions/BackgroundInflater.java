@@ -0,0 +1,40 @@
+package me.samthompson.bubbleactions;
+
+import android.content.Context;
+import android.util.AttributeSet;
+import android.view.LayoutInflater;
+import android.view.View;
+
+/**
+ * A LayoutInflater that can be used off the main thread. The inflater of an activity keeps state
+ * while it inflates and may have factories that expect the main thread, so background work gets
+ * its own inflater without any factories. Views are created from the framework classes directly.
+ */
+final class BackgroundInflater extends LayoutInflater {
+
+    private static final String[] CLASS_PREFIXES = {"android.widget.", "android.webkit.", "android.app."};
+
+    BackgroundInflater(Context context) {
+        super(context);
+    }
+
+    @Override
+    public LayoutInflater cloneInContext(Context newContext) {
+        return new BackgroundInflater(newContext);
+    }
+
+    @Override
+    protected View onCreateView(String name, AttributeSet attrs) throws ClassNotFoundException {
+        for (String prefix : CLASS_PREFIXES) {
+            try {
+                View view = createView(name, prefix, attrs);
+                if (view != null) {
+                    return view;
+                }
+            } catch (ClassNotFoundException e) {
+                // try the next prefix
+            }
+        }
+        return super.onCreateView(name, attrs);
+    }
+}
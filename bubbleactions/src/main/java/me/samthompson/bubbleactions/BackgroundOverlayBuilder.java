@@ -0,0 +1,85 @@
+package me.samthompson.bubbleactions;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.util.Log;
+import android.view.ViewGroup;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Builds and prewarms the overlay of a root view on a worker thread, then hands it to the
+ * {@link OverlayPool} on the main thread. Views that are not attached to a window can be created on
+ * any thread, as long as only one thread uses them at a time; the overlay is not touched by the
+ * worker after it has been posted.
+ * <p>
+ * If BubbleActions are shown before the overlay is ready, the pool builds one on the main thread as
+ * usual and the one from the worker is dropped. It is also dropped if the root's activity was
+ * finished while it was being built, see {@link OverlayPool#canPool(ViewGroup)}. All
+ * overlays are built one after the other on a single shared worker thread.
+ */
+final class BackgroundOverlayBuilder implements Runnable {
+
+    private static final String TAG = BackgroundOverlayBuilder.class.getSimpleName();
+
+    private static final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    private static final Executor executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, TAG);
+            // the executor is never shut down, so its thread must not keep the process alive
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    private final ViewGroup root;
+    private final Context context;
+
+    private BackgroundOverlayBuilder(ViewGroup root) {
+        this.root = root;
+        this.context = root.getContext();
+    }
+
+    /**
+     * Start building the overlay for a root, unless it already has one. Must be called on the main
+     * thread.
+     *
+     * @param root the root view the overlay will be added to
+     */
+    static void start(ViewGroup root) {
+        if (OverlayPool.isPooled(root)) {
+            return;
+        }
+
+        executor.execute(new BackgroundOverlayBuilder(root));
+    }
+
+    @Override
+    public void run() {
+        Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+
+        final BubbleActionOverlay overlay;
+        try {
+            BackgroundInflater inflater = new BackgroundInflater(context);
+            overlay = new BubbleActionOverlay(context, inflater);
+            overlay.prewarm(inflater);
+        } catch (RuntimeException e) {
+            // some views may insist on the main thread, the overlay will then be built on first use
+            Log.w(TAG, "Unable to build the overlay in the background.", e);
+            return;
+        }
+
+        mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                OverlayPool.offer(root, overlay);
+            }
+        });
+    }
+}
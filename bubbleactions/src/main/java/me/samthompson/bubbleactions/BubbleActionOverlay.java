@@ -1,26 +1,33 @@
 package me.samthompson.bubbleactions;
 
-import android.animation.ObjectAnimator;
-import android.animation.TypeEvaluator;
+import android.animation.ValueAnimator;
 import android.content.ClipData;
 import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Color;
 import android.graphics.RectF;
 import android.graphics.Typeface;
 import android.os.Build;
+import android.os.SystemClock;
 import android.support.v4.content.ContextCompat;
-import android.support.v4.view.ViewCompat;
-import android.support.v7.view.ViewPropertyAnimatorCompatSet;
+import android.support.v4.content.res.ResourcesCompat;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
+import android.view.WindowManager;
 import android.view.animation.Interpolator;
 import android.view.animation.OvershootInterpolator;
 import android.widget.FrameLayout;
 import android.widget.ImageView;
 
+import java.util.concurrent.Executor;
+
 /**
- * A view that implements an overlay that animates up to 5 circular icons radially
- * around a fixed point
+ * A view that implements an overlay that animates up to 12 circular icons radially
+ * around a fixed point. Bubble views are created on demand, so the overlay only ever holds as
+ * many as the largest number of actions it has shown. In {@link BubbleActions#RENDER_MODE_CANVAS}
+ * no bubble views are used at all, and the indicator, bubbles and labels are drawn by a
+ * {@link CanvasBubbleRenderer}.
  */
 class BubbleActionOverlay extends FrameLayout {
 
@@ -33,89 +40,113 @@ class BubbleActionOverlay extends FrameLayout {
     }
 
     /**
-     * Ripped straight from v21 AOSP. No idea why this is v21+
+     * Notified when the show and hide animations finish. Not called if an animation is cancelled.
      */
-    static class BackgroundAlphaTypeEvaluator implements TypeEvaluator<Integer> {
-
-        @Override
-        public Integer evaluate(float fraction, Integer startValue, Integer endValue) {
-            int startInt = startValue;
-            int startA = (startInt >> 24) & 0xff;
-            int startR = (startInt >> 16) & 0xff;
-            int startG = (startInt >> 8) & 0xff;
-            int startB = startInt & 0xff;
-
-            int endInt = endValue;
-            int endA = (endInt >> 24) & 0xff;
-            int endR = (endInt >> 16) & 0xff;
-            int endG = (endInt >> 8) & 0xff;
-            int endB = endInt & 0xff;
-
-            return ((startA + (int) (fraction * (endA - startA))) << 24) |
-                    ((startR + (int) (fraction * (endR - startR))) << 16) |
-                    ((startG + (int) (fraction * (endG - startG))) << 8) |
-                    ((startB + (int) (fraction * (endB - startB))));
-        }
+    interface AnimationListener {
+        void onShowAnimationEnd();
+        void onHideAnimationEnd();
     }
 
-    static final int MAX_ACTIONS = 5;
+    static final int MAX_ACTIONS = RadialLayout.MAX_ACTIONS;
 
     private static final String TAG = BubbleActionOverlay.class.getSimpleName();
 
     private static final float OVERSHOOT_TENSION = 1.5f;
-    private static final long BASE_ANIMATION_DURATION = 150;
+    static final long BASE_ANIMATION_DURATION = 150;
 
     private float[] actionStartX = new float[MAX_ACTIONS];
     private float[] actionStartY = new float[MAX_ACTIONS];
     private float[] actionEndX = new float[MAX_ACTIONS];
     private float[] actionEndY = new float[MAX_ACTIONS];
+    private float[] hideFromX = new float[MAX_ACTIONS];
+    private float[] hideFromY = new float[MAX_ACTIONS];
+    private float[] hideFromAlpha = new float[MAX_ACTIONS];
+    private float hideFromIndicatorAlpha;
+    private float hideFromDim;
+    private boolean hiding;
+    // whether the show animation has finished and the bubbles rest at their end positions
+    private boolean shown;
+    private float originX;
+    private float originY;
+    private RadialLayout radialLayout;
     private Interpolator interpolator;
+    private Interpolator defaultInterpolator;
     private long animationDuration;
+    private boolean hardwareLayers;
+    private boolean layersPromoted;
+    private InteractionMetrics metrics;
+    private FrameMonitor frameMonitor;
     private ClipData dragData;
     private DragShadowBuilder dragShadowBuilder;
-    private float startActionDistanceFromCenter;
-    private float stopActionDistanceFromCenter;
     private float bubbleDimension;
+    private final SlotMeasurer slotMeasurer;
     private RectF contentClipRect;
     private ImageView bubbleActionIndicator;
     private int numActions = 0;
-    private ObjectAnimator backgroundAnimator;
+    private int numBubbleViews = 0;
+    private Scrim scrim;
+    private int renderMode = BubbleActions.RENDER_MODE_VIEWS;
+    CanvasBubbleRenderer canvasRenderer;
+    private Action[] slotActions = new Action[MAX_ACTIONS];
+    private ActionContext actionContext;
+    // the slot under the finger, which is the one dropped on
+    private int hoveredSlot = -1;
+    // the slot the finger is predicted to be heading for, only set while no slot is hovered
+    private int predictedSlot = -1;
+    // the slot drawn as selected, the hovered slot or else the predicted one
+    private int highlightedSlot = -1;
+    private float predictionConfidence;
+    private SelectionPredictor predictor;
+    private int callbackDispatch = BubbleActions.CALLBACK_DISPATCH_ON_DROP;
+    private Executor callbackExecutor;
+    // the action that was dropped on, waiting for the first frame of the hide animation
+    private Action deferredAction;
+    private boolean deferredActionPosted;
+    private float arcCenterX;
+    private float arcCenterY;
+    private float[] selectFrom = new float[MAX_ACTIONS];
+    private float[] selectTo = new float[MAX_ACTIONS];
+    ValueAnimator canvasSelectAnimator;
+    final ValueAnimator showAnimator;
+    private AnimationListener animationListener;
     private OnAttachStateChangeListener onAttachStateChangeListener;
+    boolean prewarmed = false;
 
     BubbleActionOverlay(Context context) {
+        this(context, LayoutInflater.from(context));
+    }
+
+    /**
+     * @param inflater the inflater for the indicator, a {@link BackgroundInflater} when the
+     *                 overlay is built off the main thread
+     */
+    BubbleActionOverlay(Context context, LayoutInflater inflater) {
         super(context);
         contentClipRect = new RectF();
         dragShadowBuilder = new DragShadowBuilder();
         dragData = DragUtils.getClipData();
 
-        LayoutInflater inflater = LayoutInflater.from(context);
         bubbleActionIndicator = (ImageView) inflater.inflate(R.layout.bubble_actions_indicator, this, false);
         bubbleActionIndicator.setAlpha(0f);
         addView(bubbleActionIndicator, -1);
 
-        interpolator = new OvershootInterpolator(OVERSHOOT_TENSION);
+        defaultInterpolator = new OvershootInterpolator(OVERSHOOT_TENSION);
+        interpolator = defaultInterpolator;
 
-        int transparentBackgroundColor = ContextCompat.getColor(context, R.color.bubble_actions_background_transparent);
-        int darkenedBackgroundColor = ContextCompat.getColor(context, R.color.bubble_actions_background_darkened);
-        setBackgroundColor(transparentBackgroundColor);
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
-            backgroundAnimator = ObjectAnimator.ofArgb(this, "backgroundColor", transparentBackgroundColor, darkenedBackgroundColor);
-        } else {
-            backgroundAnimator = ObjectAnimator.ofObject(this, "backgroundColor", new BackgroundAlphaTypeEvaluator(), transparentBackgroundColor, darkenedBackgroundColor);
-        }
+        scrim = new Scrim(ContextCompat.getColor(context, R.color.bubble_actions_background_transparent),
+                ContextCompat.getColor(context, R.color.bubble_actions_background_darkened));
+
+        showAnimator = ValueAnimator.ofFloat(0f, 1f);
+        showAnimator.setInterpolator(BubbleView.LINEAR_INTERPOLATOR);
+        showAnimator.addUpdateListener(showUpdateListener);
 
         animationDuration = BASE_ANIMATION_DURATION;
 
+        slotMeasurer = new SlotMeasurer(getResources());
         bubbleDimension = (int) getResources().getDimension(R.dimen.bubble_actions_indicator_dimension);
-        startActionDistanceFromCenter = getResources().getDimension(R.dimen.bubble_actions_start_distance);
-        stopActionDistanceFromCenter = getResources().getDimension(R.dimen.bubble_actions_stop_distance);
-
-        for (int i = 0; i < MAX_ACTIONS; i++) {
-            BubbleView itemView = new BubbleView(getContext());
-            itemView.setVisibility(INVISIBLE);
-            itemView.setAlpha(0f);
-            addView(itemView, -1, new LayoutParams(ViewGroup.LayoutParams.WRAP_CONTENT, ViewGroup.LayoutParams.WRAP_CONTENT));
-        }
+        float startActionDistanceFromCenter = getResources().getDimension(R.dimen.bubble_actions_start_distance);
+        float stopActionDistanceFromCenter = getResources().getDimension(R.dimen.bubble_actions_stop_distance);
+        radialLayout = new RadialLayout(startActionDistanceFromCenter, stopActionDistanceFromCenter, bubbleDimension);
     }
 
     @Override
@@ -138,28 +169,161 @@ class BubbleActionOverlay extends FrameLayout {
         this.onAttachStateChangeListener = onAttachStateChangeListener;
     }
 
+    /**
+     * Switch between drawing the bubbles with a view per bubble and drawing them directly on the
+     * overlay's canvas. The canvas renderer is only created the first time it is needed.
+     *
+     * @param renderMode {@link BubbleActions#RENDER_MODE_VIEWS} or
+     *                   {@link BubbleActions#RENDER_MODE_CANVAS}
+     */
+    void setRenderMode(int renderMode) {
+        if (renderMode != BubbleActions.RENDER_MODE_VIEWS && renderMode != BubbleActions.RENDER_MODE_CANVAS) {
+            throw new IllegalArgumentException(TAG + ": unknown render mode " + renderMode + ".");
+        }
+
+        if (this.renderMode == renderMode) {
+            return;
+        }
+
+        resetBubbleViews();
+        this.renderMode = renderMode;
+        if (renderMode == BubbleActions.RENDER_MODE_CANVAS) {
+            if (canvasRenderer == null) {
+                canvasRenderer = new CanvasBubbleRenderer(getContext(), slotMeasurer);
+                canvasSelectAnimator = ValueAnimator.ofFloat(0f, 1f);
+                canvasSelectAnimator.setDuration(BubbleView.ANIMATION_DURATION);
+                canvasSelectAnimator.setInterpolator(BubbleView.LINEAR_INTERPOLATOR);
+                canvasSelectAnimator.addUpdateListener(canvasSelectUpdateListener);
+            }
+
+            // gone views are skipped by measure, layout and draw
+            bubbleActionIndicator.setVisibility(GONE);
+            for (int i = 1; i <= numBubbleViews; i++) {
+                getChildAt(i).setVisibility(GONE);
+            }
+        } else {
+            bubbleActionIndicator.setVisibility(VISIBLE);
+            for (int i = 1; i <= numBubbleViews; i++) {
+                getChildAt(i).setVisibility(INVISIBLE);
+            }
+        }
+    }
+
+    int getRenderMode() {
+        return renderMode;
+    }
+
+    /**
+     * Make sure there are at least count bubble views. Slots are sized from their measured labels,
+     * so new views can be positioned by {@link #setupOverlay} before they have been laid out.
+     *
+     * @param count the number of bubble views needed
+     * @return true if any bubble views were added
+     */
+    boolean ensureBubbleViews(int count) {
+        return ensureBubbleViews(count, null);
+    }
+
+    private boolean ensureBubbleViews(int count, LayoutInflater inflater) {
+        if (count > MAX_ACTIONS) {
+            throw new IllegalArgumentException(TAG + ": actions cannot have more than " + MAX_ACTIONS + " actions. ");
+        }
+
+        if (renderMode == BubbleActions.RENDER_MODE_CANVAS) {
+            return false;
+        }
+
+        boolean added = false;
+        while (numBubbleViews < count) {
+            if (inflater == null) {
+                inflater = LayoutInflater.from(getContext());
+            }
+            BubbleView itemView = new BubbleView(getContext(), inflater);
+            itemView.setVisibility(INVISIBLE);
+            itemView.setAlpha(0f);
+            itemView.addOnLayoutChangeListener(bubbleLayoutListener);
+            addView(itemView, -1, new LayoutParams(ViewGroup.LayoutParams.WRAP_CONTENT, ViewGroup.LayoutParams.WRAP_CONTENT));
+            numBubbleViews++;
+            added = true;
+        }
+        return added;
+    }
+
+    /**
+     * Do the work of a first show ahead of time: create the bubble views for a full inner ring and
+     * load the default indicator into the resource cache. Menus with more actions add the rest of
+     * their bubble views on first use.
+     */
+    void prewarm() {
+        prewarm(null);
+    }
+
+    /**
+     * @param inflater the inflater for the bubble views, a {@link BackgroundInflater} when the
+     *                 overlay is prewarmed off the main thread
+     * @see #prewarm()
+     */
+    void prewarm(LayoutInflater inflater) {
+        ensureBubbleViews(RadialLayout.INNER_RING_CAPACITY, inflater);
+        ResourcesCompat.getDrawable(getResources(), R.drawable.bubble_actions_indicator, getContext().getTheme());
+        prewarmed = true;
+    }
+
     void setLabelTypeface(Typeface typeface) {
-        for (int i = 1; i <= MAX_ACTIONS; i++) {
+        slotMeasurer.setTypeface(typeface);
+        if (canvasRenderer != null) {
+            canvasRenderer.setTypeface(typeface);
+        }
+        for (int i = 1; i <= numBubbleViews; i++) {
             BubbleView itemView = (BubbleView) getChildAt(i);
             itemView.textView.setTypeface(typeface);
         }
     }
 
     void setInterpolator(Interpolator interpolator) {
-        this.interpolator = interpolator;
+        this.interpolator = interpolator != null ? interpolator : defaultInterpolator;
     }
 
     void setAnimationDuration(long animationDuration) {
         this.animationDuration = animationDuration;
     }
 
+    /**
+     * Promote the bubbles and the indicator to hardware layers while they animate in and out. Only
+     * their translation and alpha change during those animations, so the layers are drawn once and
+     * then composited every frame. Has no effect in {@link BubbleActions#RENDER_MODE_CANVAS},
+     * where there are no bubble views to promote.
+     */
+    void setHardwareLayers(boolean hardwareLayers) {
+        this.hardwareLayers = hardwareLayers;
+    }
+
     void setupOverlay(float originX, float originY, BubbleActions bubbleActions) {
-        backgroundAnimator.setDuration(animationDuration);
+        // the overlay may be shared by several BubbleActions instances, so rebind all of the
+        // configuration every time it is set up
+        setLabelTypeface(bubbleActions.typeface);
+        setInterpolator(bubbleActions.interpolator);
+        setAnimationDuration(bubbleActions.animationDuration);
+        setHardwareLayers(bubbleActions.hardwareLayers);
+        metrics = bubbleActions.metrics;
+        callbackDispatch = bubbleActions.callbackDispatch;
+        callbackExecutor = bubbleActions.callbackExecutor;
+        predictionConfidence = bubbleActions.predictionConfidence;
+        if (predictionConfidence > 0f && predictor == null) {
+            predictor = new SelectionPredictor(getResources().getDisplayMetrics().density);
+        }
         numActions = bubbleActions.numActions;
+        this.originX = originX;
+        this.originY = originY;
         if (numActions > MAX_ACTIONS) {
             throw new IllegalArgumentException(TAG + ": actions cannot have more than " + MAX_ACTIONS + " actions. ");
         }
 
+        if (renderMode == BubbleActions.RENDER_MODE_CANVAS) {
+            setupCanvasOverlay(originX, originY, bubbleActions);
+            return;
+        }
+
         if (bubbleActions.indicator != null) {
             bubbleActionIndicator.setImageDrawable(bubbleActions.indicator);
         } else {
@@ -167,119 +331,627 @@ class BubbleActionOverlay extends FrameLayout {
         }
 
         contentClipRect.set(0, 0, getWidth(), getHeight());
-        bubbleActionIndicator.setX(originX - (bubbleActionIndicator.getWidth() / 2.0f));
-        bubbleActionIndicator.setY(originY - (bubbleActionIndicator.getHeight() / 2.0f));
+        // the indicator may not have been laid out yet after switching from canvas rendering
+        ViewGroup.LayoutParams indicatorParams = bubbleActionIndicator.getLayoutParams();
+        bubbleActionIndicator.setX(originX - (indicatorParams.width / 2.0f));
+        bubbleActionIndicator.setY(originY - (indicatorParams.height / 2.0f));
 
-        // check if we're too short on any of the sides
-        double angleDelta = Math.PI / (numActions + 1);
-        float requiredSpace = (float) Math.cos(angleDelta) * (stopActionDistanceFromCenter + bubbleDimension);
-        boolean leftOk = contentClipRect.contains(originX - requiredSpace, originY);
-        boolean rightOk = contentClipRect.contains(originX + requiredSpace, originY);
+        ensureBubbleViews(numActions);
+        int side = radialLayout.layout(originX, originY, contentClipRect.left, contentClipRect.top,
+                contentClipRect.right, contentClipRect.bottom, numActions);
 
         // if this statement is true then we don't have enough space on the sides
-        if (!leftOk && !rightOk) {
+        if (side == RadialLayout.SIDE_NONE) {
             throw new IllegalStateException(BubbleActionOverlay.class.toString() + ": view has no space to expand actions.");
         }
 
-        // Kind of tricky logic
-        double startingAngle;
-        if (rightOk && leftOk) {
-            startingAngle = Math.PI + angleDelta;
-        } else if (rightOk) {
-            startingAngle = -Math.acos((contentClipRect.left - originX) / (stopActionDistanceFromCenter + bubbleDimension));
-        } else {
-            startingAngle = -Math.acos((contentClipRect.right - originX) / (stopActionDistanceFromCenter + bubbleDimension)) - (numActions - 1) * angleDelta;
-        }
-
-        // this looks a little complicated, but it's necessary to maintain the correct z ordering
-        // so that the labels do not appear underneath a bubble
-        double angle = startingAngle;
-        int actionIndex = 0;
-        int start = rightOk ? 0 : numActions - 1;
-        int end = rightOk ? numActions : -1;
-        int delta = rightOk ? 1 : -1;
-        for (int i = start; i != end; i += delta) {
+        // the layout decides which action goes in which slot, this maintains the correct z
+        // ordering so that the labels do not appear underneath a bubble
+        bindSlots(bubbleActions);
+        for (int i = 0; i < numActions; i++) {
             BubbleView bubbleView = (BubbleView) getChildAt(i + 1);
 
             // Bind action specifics to BubbleView
-            Action action = bubbleActions.actions[actionIndex];
+            Action action = slotActions[i];
             bubbleView.textView.setText(action.actionName);
             bubbleView.imageView.setImageDrawable(action.bubble);
-            bubbleView.callback = action.callback;
 
-            // Calculate and set the locations of the BubbleView
-            float halfWidth = bubbleView.getWidth() / 2.0f;
-            float halfHeight = bubbleView.getHeight() / 2.0f;
-            float cosAngle = (float) Math.cos(angle);
-            float sinAngle = (float) Math.sin(angle);
-            actionEndX[i] = originX + stopActionDistanceFromCenter * cosAngle - halfWidth;
-            actionEndY[i] = originY + stopActionDistanceFromCenter * sinAngle - halfHeight;
-            actionStartX[i] = originX + startActionDistanceFromCenter * cosAngle - halfWidth;
-            actionStartY[i] = originY + startActionDistanceFromCenter * sinAngle - halfHeight;
-            bubbleView.setX(actionStartX[i]);
-            bubbleView.setY(actionStartY[i]);
+            // Calculate and set the locations of the BubbleView. The view may not have been laid out
+            // with its new label yet, so the slot is sized from the measured label instead.
+            positionSlot(i, slotMeasurer.getSlotWidth(action), slotMeasurer.getSlotHeight());
+            bubbleView.setTranslationX(actionStartX[i]);
+            bubbleView.setTranslationY(actionStartY[i]);
+        }
+
+        setArcCenter(originX, originY, slotMeasurer.getBubbleOffsetY());
+    }
+
+    private void bindSlots(BubbleActions bubbleActions) {
+        actionContext = bubbleActions.actionContext;
+        hoveredSlot = -1;
+        predictedSlot = -1;
+        highlightedSlot = -1;
+        if (predictor != null) {
+            predictor.reset();
+        }
+        for (int i = 0; i < numActions; i++) {
+            slotActions[i] = bubbleActions.actions[radialLayout.slotAction[i]];
+        }
+    }
+
+    /**
+     * Calculate where a slot's bubble starts and ends its animation, centering the bubble on its
+     * place on the arc.
+     */
+    private void positionSlot(int slot, float width, float height) {
+        float halfWidth = width / 2.0f;
+        float halfHeight = height / 2.0f;
+        float unitX = radialLayout.unitX[slot];
+        float unitY = radialLayout.unitY[slot];
+        float startDistance = radialLayout.getStartDistance(radialLayout.slotRing[slot]);
+        float stopDistance = radialLayout.getStopDistance(radialLayout.slotRing[slot]);
+        actionEndX[slot] = originX + stopDistance * unitX - halfWidth;
+        actionEndY[slot] = originY + stopDistance * unitY - halfHeight;
+        actionStartX[slot] = originX + startDistance * unitX - halfWidth;
+        actionStartY[slot] = originY + startDistance * unitY - halfHeight;
+    }
+
+    /**
+     * Move a slot that was positioned again onto its new position. While the show or hide
+     * animation runs, the next frame picks the new position up instead.
+     */
+    private void placeSlot(int slot) {
+        if (showAnimator.isRunning()) {
+            return;
+        }
+
+        float x = shown ? actionEndX[slot] : actionStartX[slot];
+        float y = shown ? actionEndY[slot] : actionStartY[slot];
+        if (renderMode == BubbleActions.RENDER_MODE_CANVAS) {
+            canvasRenderer.translationX[slot] = x;
+            canvasRenderer.translationY[slot] = y;
+        } else {
+            View child = getChildAt(slot + 1);
+            child.setTranslationX(x);
+            child.setTranslationY(y);
+        }
+    }
+
+    /**
+     * Bind the new label and bubble of a lazy action, if it is shown. A label of a different
+     * width moves the bubble so it stays centered on its place on the arc.
+     *
+     * @param action the action whose content has changed
+     */
+    void updateAction(Action action) {
+        for (int i = 0; i < numActions; i++) {
+            if (slotActions[i] != action) {
+                continue;
+            }
+
+            if (renderMode == BubbleActions.RENDER_MODE_CANVAS) {
+                canvasRenderer.bind(i, action);
+                invalidate();
+            } else {
+                BubbleView bubbleView = (BubbleView) getChildAt(i + 1);
+                bubbleView.textView.setText(action.actionName);
+                bubbleView.imageView.setImageDrawable(action.bubble);
+            }
+            positionSlot(i, slotMeasurer.getSlotWidth(action), slotMeasurer.getSlotHeight());
+            placeSlot(i);
+            return;
+        }
+    }
+
+    /**
+     * The bubbles are centered below the center of their slots, so the arc that the bubbles sit on
+     * is shifted down from the touch point by the same amount.
+     */
+    private void setArcCenter(float originX, float originY, float bubbleOffsetY) {
+        arcCenterX = originX;
+        arcCenterY = originY + bubbleOffsetY;
+    }
+
+    /**
+     * Same as {@link #setupOverlay} but the slots are measured and positioned by the canvas
+     * renderer rather than by laying out bubble views.
+     */
+    private void setupCanvasOverlay(float originX, float originY, BubbleActions bubbleActions) {
+        CanvasBubbleRenderer renderer = canvasRenderer;
+        renderer.indicator = bubbleActions.indicator;
+        renderer.indicatorX = originX - renderer.getIndicatorDimension() / 2.0f;
+        renderer.indicatorY = originY - renderer.getIndicatorDimension() / 2.0f;
+        renderer.indicatorAlpha = 0f;
+
+        contentClipRect.set(0, 0, getWidth(), getHeight());
+        int side = radialLayout.layout(originX, originY, contentClipRect.left, contentClipRect.top,
+                contentClipRect.right, contentClipRect.bottom, numActions);
+
+        if (side == RadialLayout.SIDE_NONE) {
+            throw new IllegalStateException(BubbleActionOverlay.class.toString() + ": view has no space to expand actions.");
+        }
+
+        bindSlots(bubbleActions);
+        for (int i = 0; i < numActions; i++) {
+            Action action = slotActions[i];
+            renderer.bind(i, action);
+
+            positionSlot(i, renderer.slotWidth[i], renderer.slotHeight[i]);
+            renderer.translationX[i] = actionStartX[i];
+            renderer.translationY[i] = actionStartY[i];
+        }
+        setArcCenter(originX, originY, slotMeasurer.getBubbleOffsetY());
+        invalidate();
+    }
 
-            angle += angleDelta;
-            actionIndex++;
+    @Override
+    protected void dispatchDraw(Canvas canvas) {
+        int scrimColor = scrim.getColor();
+        if (Color.alpha(scrimColor) != 0) {
+            canvas.drawColor(scrimColor);
         }
 
+        super.dispatchDraw(canvas);
+        if (renderMode == BubbleActions.RENDER_MODE_CANVAS) {
+            canvasRenderer.draw(canvas, numActions);
+        }
     }
 
+    /**
+     * Update the hovered bubble from a drag location. The bubble is picked geometrically from the
+     * layout, see {@link RadialLayout#hitTest}, so the bubbles do not need drag listeners of their
+     * own and each bubble can be hovered anywhere in its sector.
+     */
+    void onDragLocation(float x, float y) {
+        float dx = x - arcCenterX;
+        float dy = y - arcCenterY;
+        int slot = radialLayout.hitTest(dx, dy);
+        setHoveredSlot(slot);
+
+        int predicted = -1;
+        if (predictionConfidence > 0f) {
+            predictor.addSample(dx, dy, SystemClock.uptimeMillis());
+            if (slot < 0) {
+                predicted = predictor.predict(radialLayout, predictionConfidence);
+                if (predicted < 0 && predictedSlot >= 0 && predictor.isHeadingFor(radialLayout, predictedSlot)) {
+                    // a finger slowing down on its way to the predicted bubble keeps the prediction
+                    predicted = predictedSlot;
+                }
+            }
+        }
+        setPredictedSlot(predicted);
+        setHighlightedSlot(hoveredSlot >= 0 ? hoveredSlot : predictedSlot);
+    }
+
+    /**
+     * Clear the hovered bubble, for example when the drag leaves the overlay.
+     */
+    void clearHover() {
+        setHoveredSlot(-1);
+        setPredictedSlot(-1);
+        setHighlightedSlot(-1);
+        if (predictor != null) {
+            predictor.reset();
+        }
+    }
+
+    /**
+     * Run the action of the hovered bubble.
+     *
+     * @return true if an action was run
+     */
+    boolean dropOnHoveredSlot() {
+        if (hoveredSlot < 0) {
+            return false;
+        }
+
+        if (metrics != null) {
+            metrics.hoverToDropNanos = System.nanoTime() - metrics.hoverTime;
+            metrics.actionIndex = radialLayout.slotAction[hoveredSlot];
+        }
+
+        if (callbackDispatch == BubbleActions.CALLBACK_DISPATCH_AFTER_HIDE_FRAME) {
+            deferredAction = slotActions[hoveredSlot];
+        } else {
+            invokeAction(slotActions[hoveredSlot]);
+        }
+        return true;
+    }
+
+    /**
+     * Run the deferred action, if there is one. Called after the first frame of the hide
+     * animation, and at the latest right before the hide animation is reported as finished.
+     */
+    private void invokeDeferredAction() {
+        removeCallbacks(deferredActionRunnable);
+        deferredActionPosted = false;
+        Action action = deferredAction;
+        if (action != null) {
+            deferredAction = null;
+            invokeAction(action);
+        }
+    }
+
+    private void invokeAction(Action action) {
+        long start = metrics != null ? System.nanoTime() : 0;
+        if (callbackExecutor != null) {
+            // the executor may run it after the overlay has been reset or its BubbleActions
+            // released, so it runs copies of the callbacks and the action context
+            callbackExecutor.execute(new ActionRunnable(new Action(action), actionContext.copy()));
+        } else {
+            action.doAction(actionContext);
+        }
+        if (metrics != null) {
+            metrics.callbackNanos = System.nanoTime() - start;
+        }
+    }
+
+    private void setHoveredSlot(int slot) {
+        if (slot == hoveredSlot) {
+            return;
+        }
+
+        if (slot >= 0 && metrics != null) {
+            metrics.hoverTime = System.nanoTime();
+        }
+        hoveredSlot = slot;
+    }
+
+    private void setPredictedSlot(int slot) {
+        if (slot == predictedSlot) {
+            return;
+        }
+
+        if (metrics != null) {
+            if (slot >= 0) {
+                metrics.predictions++;
+            }
+            // a prediction dropped before the finger reached its bubble was wrong
+            if (predictedSlot >= 0 && predictedSlot != hoveredSlot) {
+                metrics.mispredictions++;
+            }
+        }
+        predictedSlot = slot;
+    }
+
+    /**
+     * Animate a bubble to its selected appearance, and the previously selected one back. The
+     * animations start from wherever the bubbles currently are, so a wrong prediction is undone
+     * from however far its highlight got.
+     */
+    private void setHighlightedSlot(int slot) {
+        if (slot == highlightedSlot) {
+            return;
+        }
+
+        if (renderMode == BubbleActions.RENDER_MODE_VIEWS) {
+            if (highlightedSlot >= 0) {
+                ((BubbleView) getChildAt(highlightedSlot + 1)).animateSelected(false);
+            }
+            if (slot >= 0) {
+                ((BubbleView) getChildAt(slot + 1)).animateSelected(true);
+            }
+            highlightedSlot = slot;
+            return;
+        }
+
+        if (highlightedSlot >= 0) {
+            canvasRenderer.setSelected(highlightedSlot, false);
+        }
+        if (slot >= 0) {
+            canvasRenderer.setSelected(slot, true);
+        }
+        highlightedSlot = slot;
+
+        // retarget every bubble from where it currently is, so hovering back and forth does not
+        // jump
+        canvasSelectAnimator.cancel();
+        for (int i = 0; i < numActions; i++) {
+            selectFrom[i] = canvasRenderer.selectFraction[i];
+            selectTo[i] = i == slot ? 1f : 0f;
+        }
+        canvasSelectAnimator.start();
+    }
+
+    private final ValueAnimator.AnimatorUpdateListener canvasSelectUpdateListener = new ValueAnimator.AnimatorUpdateListener() {
+        @Override
+        public void onAnimationUpdate(ValueAnimator animation) {
+            float eased = BubbleView.ACCELERATE_DECELERATE_INTERPOLATOR.getInterpolation(animation.getAnimatedFraction());
+            for (int i = 0; i < numActions; i++) {
+                canvasRenderer.selectFraction[i] = selectFrom[i] + (selectTo[i] - selectFrom[i]) * eased;
+            }
+            invalidate();
+        }
+    };
+
     void startDrag() {
         startDrag(dragData, dragShadowBuilder, null, 0);
     }
 
-    void animateDimBackground() {
-        backgroundAnimator.start();
+    void setAnimationListener(AnimationListener animationListener) {
+        this.animationListener = animationListener;
     }
 
-    void animateUndimBackground() {
-        backgroundAnimator.reverse();
+    /**
+     * @param actionContext the action context of a BubbleActions instance
+     * @return true if the overlay is set up with the actions of that instance
+     */
+    boolean isBoundTo(ActionContext actionContext) {
+        return this.actionContext == actionContext;
     }
 
     void resetBubbleViews() {
+        // a selected action always runs, even if the overlay is removed before it is hidden
+        invokeDeferredAction();
+        callbackExecutor = null;
+        showAnimator.cancel();
+        restoreLayers();
+        stopFrameMonitor();
+        metrics = null;
+        setDimFraction(0f);
+        for (int i = 0; i < numActions; i++) {
+            slotActions[i] = null;
+        }
+        actionContext = null;
+        hoveredSlot = -1;
+        predictedSlot = -1;
+        highlightedSlot = -1;
+        shown = false;
+
+        if (renderMode == BubbleActions.RENDER_MODE_CANVAS) {
+            canvasSelectAnimator.cancel();
+            canvasRenderer.reset();
+            invalidate();
+            return;
+        }
+
         for (int i = 0; i < numActions; i++) {
             ((BubbleView) getChildAt(i + 1)).resetAppearance();
         }
     }
 
-    ViewPropertyAnimatorCompatSet getAnimateSetShow() {
-        ViewPropertyAnimatorCompatSet resultSet = new ViewPropertyAnimatorCompatSet();
-        resultSet.play(ViewCompat.animate(bubbleActionIndicator)
-                .alpha(1f)
-                .setDuration(animationDuration));
+    /**
+     * Animate the indicator and bubbles in and dim the background.
+     */
+    void animateShow() {
+        showAnimator.cancel();
+        hiding = false;
+        shown = false;
+        startFrameMonitor();
+        if (renderMode == BubbleActions.RENDER_MODE_VIEWS) {
+            for (int i = 0; i < numActions; i++) {
+                getChildAt(i + 1).setVisibility(VISIBLE);
+            }
+        }
+        promoteLayers();
+        showAnimator.setDuration(animationDuration);
+        showAnimator.start();
+    }
 
-        for (int i = 0; i < numActions; i++) {
-            final BubbleView child = (BubbleView) getChildAt(i + 1);
-            child.setVisibility(VISIBLE);
-            resultSet.play(ViewCompat.animate(child)
-                    .translationX(actionEndX[i])
-                    .translationY(actionEndY[i])
-                    .alpha(1f)
-                    .setInterpolator(interpolator)
-                    .setDuration(animationDuration));
+    /**
+     * Animate the indicator and bubbles out from wherever they currently are and undim the
+     * background.
+     */
+    void animateHide() {
+        showAnimator.cancel();
+        hiding = true;
+        shown = false;
+        stopFrameMonitor();
+        hideFromDim = scrim.getFraction();
+        if (renderMode == BubbleActions.RENDER_MODE_CANVAS) {
+            hideFromIndicatorAlpha = canvasRenderer.indicatorAlpha;
+            System.arraycopy(canvasRenderer.translationX, 0, hideFromX, 0, numActions);
+            System.arraycopy(canvasRenderer.translationY, 0, hideFromY, 0, numActions);
+            System.arraycopy(canvasRenderer.alpha, 0, hideFromAlpha, 0, numActions);
+        } else {
+            hideFromIndicatorAlpha = bubbleActionIndicator.getAlpha();
+            for (int i = 0; i < numActions; i++) {
+                View child = getChildAt(i + 1);
+                hideFromX[i] = child.getTranslationX();
+                hideFromY[i] = child.getTranslationY();
+                hideFromAlpha[i] = child.getAlpha();
+            }
+        }
+        promoteLayers();
+        showAnimator.setDuration(animationDuration);
+        showAnimator.start();
+    }
+
+    private void startFrameMonitor() {
+        if (metrics == null) {
+            return;
+        }
+
+        metrics.showAnimationStartTime = System.nanoTime();
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            if (frameMonitor == null) {
+                WindowManager windowManager = (WindowManager) getContext().getSystemService(Context.WINDOW_SERVICE);
+                frameMonitor = new FrameMonitor(windowManager.getDefaultDisplay().getRefreshRate());
+            }
+            frameMonitor.start();
+        }
+    }
+
+    /**
+     * Stop counting frames and record the results of the show animation, also if it was
+     * interrupted.
+     */
+    private void stopFrameMonitor() {
+        if (frameMonitor == null || metrics == null || metrics.showAnimationStartTime == 0) {
+            return;
         }
 
-        return resultSet;
+        metrics.droppedFrames = frameMonitor.stop();
+        long firstFrameTime = frameMonitor.getFirstFrameTimeNanos();
+        if (firstFrameTime != 0 && metrics.showTime != 0) {
+            metrics.firstFrameNanos = firstFrameTime - metrics.showTime;
+        }
     }
 
-    ViewPropertyAnimatorCompatSet getAnimateSetHide() {
-        ViewPropertyAnimatorCompatSet resultSet = new ViewPropertyAnimatorCompatSet();
-        resultSet.play(ViewCompat.animate(bubbleActionIndicator)
-                .alpha(0f)
-                .setDuration(animationDuration));
+    private void promoteLayers() {
+        if (!hardwareLayers || layersPromoted || renderMode == BubbleActions.RENDER_MODE_CANVAS) {
+            return;
+        }
 
+        layersPromoted = true;
+        bubbleActionIndicator.setLayerType(LAYER_TYPE_HARDWARE, null);
         for (int i = 0; i < numActions; i++) {
-            final BubbleView child = (BubbleView) getChildAt(i + 1);
-            resultSet.play(ViewCompat.animate(child)
-                    .translationX(actionStartX[i])
-                    .translationY(actionStartY[i])
-                    .alpha(0f)
-                    .setInterpolator(null)
-                    .setDuration(animationDuration));
+            getChildAt(i + 1).setLayerType(LAYER_TYPE_HARDWARE, null);
         }
+    }
 
-        return resultSet;
+    private void restoreLayers() {
+        if (!layersPromoted) {
+            return;
+        }
+
+        // the bubble views and the indicator are owned by the overlay and never have a layer of
+        // their own, so there is nothing else to restore
+        layersPromoted = false;
+        bubbleActionIndicator.setLayerType(LAYER_TYPE_NONE, null);
+        for (int i = 1; i <= numBubbleViews; i++) {
+            getChildAt(i).setLayerType(LAYER_TYPE_NONE, null);
+        }
     }
 
-}
\ No newline at end of file
+    private void setIndicatorAlpha(float alpha) {
+        if (renderMode == BubbleActions.RENDER_MODE_CANVAS) {
+            canvasRenderer.indicatorAlpha = alpha;
+        } else {
+            bubbleActionIndicator.setAlpha(alpha);
+        }
+    }
+
+    private void setSlot(int slot, float translationX, float translationY, float alpha) {
+        if (renderMode == BubbleActions.RENDER_MODE_CANVAS) {
+            canvasRenderer.translationX[slot] = translationX;
+            canvasRenderer.translationY[slot] = translationY;
+            canvasRenderer.alpha[slot] = alpha;
+        } else {
+            View child = getChildAt(slot + 1);
+            child.setTranslationX(translationX);
+            child.setTranslationY(translationY);
+            child.setAlpha(alpha);
+        }
+    }
+
+    private void setDimFraction(float fraction) {
+        if (scrim.setFraction(fraction)) {
+            invalidate();
+        }
+    }
+
+    private final Runnable deferredActionRunnable = new Runnable() {
+        @Override
+        public void run() {
+            invokeDeferredAction();
+        }
+    };
+
+    // slots are sized from their measured labels, but labels with spans may be laid out to a
+    // different size, so bubble views that change size are moved to stay centered on the arc
+    private final View.OnLayoutChangeListener bubbleLayoutListener = new View.OnLayoutChangeListener() {
+        @Override
+        public void onLayoutChange(View v, int left, int top, int right, int bottom, int oldLeft, int oldTop, int oldRight, int oldBottom) {
+            int slot = indexOfChild(v) - 1;
+            if (slot < 0 || slot >= numActions || slotActions[slot] == null) {
+                return;
+            }
+
+            int width = right - left;
+            int height = bottom - top;
+            if (width == oldRight - oldLeft && height == oldBottom - oldTop) {
+                return;
+            }
+
+            positionSlot(slot, width, height);
+            placeSlot(slot);
+        }
+    };
+
+    // Both the show and the hide animation are driven by this listener from primitive arrays, so
+    // running them does not allocate. An AnimatorListener would copy its listener list on every
+    // start and end, so the end of the animation is detected here as well.
+    private final ValueAnimator.AnimatorUpdateListener showUpdateListener = new ValueAnimator.AnimatorUpdateListener() {
+        @Override
+        public void onAnimationUpdate(ValueAnimator animation) {
+            float fraction = animation.getAnimatedFraction();
+            float eased = BubbleView.ACCELERATE_DECELERATE_INTERPOLATOR.getInterpolation(fraction);
+
+            if (hiding) {
+                setIndicatorAlpha(hideFromIndicatorAlpha * (1f - eased));
+                setDimFraction(hideFromDim * (1f - eased));
+                for (int i = 0; i < numActions; i++) {
+                    setSlot(i, hideFromX[i] + (actionStartX[i] - hideFromX[i]) * fraction,
+                            hideFromY[i] + (actionStartY[i] - hideFromY[i]) * fraction,
+                            hideFromAlpha[i] * (1f - fraction));
+                }
+            } else {
+                float interpolated = interpolator.getInterpolation(fraction);
+                float alpha = Math.max(0f, Math.min(1f, interpolated));
+                setIndicatorAlpha(eased);
+                setDimFraction(eased);
+                for (int i = 0; i < numActions; i++) {
+                    setSlot(i, actionStartX[i] + (actionEndX[i] - actionStartX[i]) * interpolated,
+                            actionStartY[i] + (actionEndY[i] - actionStartY[i]) * interpolated,
+                            alpha);
+                }
+            }
+
+            if (renderMode == BubbleActions.RENDER_MODE_CANVAS) {
+                invalidate();
+            }
+
+            if (metrics != null && !hiding) {
+                // without a Choreographer, the first frame is the first update after the
+                // animation started
+                if (frameMonitor == null && metrics.firstFrameNanos == 0 && fraction > 0f) {
+                    metrics.firstFrameNanos = System.nanoTime() - metrics.showTime;
+                }
+                if (fraction >= 1f) {
+                    metrics.showAnimationNanos = System.nanoTime() - metrics.showAnimationStartTime;
+                    stopFrameMonitor();
+                }
+            }
+
+            if (hiding && deferredAction != null) {
+                if (fraction >= 1f) {
+                    invokeDeferredAction();
+                } else if (fraction > 0f && !deferredActionPosted) {
+                    // runs after this frame has been drawn
+                    deferredActionPosted = true;
+                    post(deferredActionRunnable);
+                }
+            }
+
+            if (fraction >= 1f) {
+                shown = !hiding;
+                restoreLayers();
+            }
+
+            if (fraction >= 1f && animationListener != null) {
+                if (hiding) {
+                    animationListener.onHideAnimationEnd();
+                } else {
+                    animationListener.onShowAnimationEnd();
+                }
+            }
+        }
+    };
+
+    private static class ActionRunnable implements Runnable {
+
+        private final Action action;
+        private final ActionContext actionContext;
+
+        ActionRunnable(Action action, ActionContext actionContext) {
+            this.action = action;
+            this.actionContext = actionContext;
+        }
+
+        @Override
+        public void run() {
+            action.doAction(actionContext);
+        }
+    }
+}
@@ -1,24 +1,23 @@
 package me.samthompson.bubbleactions;
 
+import android.app.Activity;
 import android.content.res.Resources;
 import android.graphics.Point;
 import android.graphics.Typeface;
 import android.graphics.drawable.Drawable;
 import android.os.Build;
+import android.os.Looper;
+import android.os.MessageQueue;
 import android.support.v4.content.res.ResourcesCompat;
 import android.support.v4.view.ViewCompat;
-import android.support.v4.view.ViewPropertyAnimatorListenerAdapter;
-import android.support.v7.widget.PopupMenu;
+import android.util.Log;
 import android.view.DragEvent;
-import android.view.Menu;
-import android.view.MenuInflater;
-import android.view.MenuItem;
+import android.view.MotionEvent;
 import android.view.View;
 import android.view.ViewGroup;
 import android.view.animation.Interpolator;
 
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
+import java.util.concurrent.Executor;
 
 /**
  * Inspired by the Pinterest Android app, BubbleActions make it easy to perform actions on ui
@@ -27,40 +26,94 @@ import java.lang.reflect.Method;
  */
 public final class BubbleActions {
 
+    /**
+     * Render each bubble with its own views. This is the default.
+     */
+    public static final int RENDER_MODE_VIEWS = 0;
+
+    /**
+     * Draw the indicator, bubbles and labels directly on the overlay's canvas. The overlay is then
+     * a single view, which saves measuring, laying out and drawing a view tree per bubble.
+     */
+    public static final int RENDER_MODE_CANVAS = 1;
+
+    /**
+     * Follow the finger with the framework's drag and drop. This is the default.
+     */
+    public static final int INPUT_MODE_DRAG_AND_DROP = 0;
+
+    /**
+     * Follow the finger by taking over the rest of the touch gesture on the view the actions are
+     * shown on. The overlay receives the rest of the gesture in place of the view, which gets a
+     * cancel event. Everything happens in process, there is no drag shadow, no round trip to the
+     * window manager and no drag events are sent to the other views in the window.
+     */
+    public static final int INPUT_MODE_TOUCH = 1;
+
+    /**
+     * Call the callback of the selected action as soon as the finger is lifted, before the hide
+     * animation starts. This is the default.
+     */
+    public static final int CALLBACK_DISPATCH_ON_DROP = 0;
+
+    /**
+     * Call the callback of the selected action once the first frame of the hide animation has been
+     * drawn, so a slow callback does not freeze the overlay on screen. The callback always runs
+     * before the hide animation finishes.
+     */
+    public static final int CALLBACK_DISPATCH_AFTER_HIDE_FRAME = 1;
+
     private static final String TAG = BubbleActions.class.getSimpleName();
 
+    private static final Action[] NO_ACTIONS = new Action[0];
+
     private ViewGroup root;
     private BubbleActionOverlay overlay;
-    private Method getLastTouchPoint;
-    private Object viewRootImpl;
+    private TouchPointProvider touchPointProvider = TouchTracker.getInstance();
     private Point touchPoint = new Point();
     private boolean showing = false;
+    // set up ahead of show() by prepare(), but not added to the root yet
+    private boolean prepared = false;
     Action[] actions = new Action[BubbleActionOverlay.MAX_ACTIONS];
     int numActions = 0;
+    private boolean sharedActions = false;
+    final ActionContext actionContext;
     Drawable indicator;
-
-    private BubbleActions(ViewGroup root) {
+    private Drawable placeholder;
+    Typeface typeface;
+    Interpolator interpolator;
+    long animationDuration = BubbleActionOverlay.BASE_ANIMATION_DURATION;
+    boolean hardwareLayers = false;
+    InteractionMetrics metrics;
+    private MetricsListener metricsListener;
+    private long overlayAcquireNanos;
+    private int renderMode = RENDER_MODE_VIEWS;
+    int inputMode = INPUT_MODE_DRAG_AND_DROP;
+    // whether the caller forwards the rest of the gesture to the TouchTracker, so the overlay does
+    // not have to take it over
+    boolean touchesForwarded = false;
+    int callbackDispatch = CALLBACK_DISPATCH_ON_DROP;
+    Executor callbackExecutor;
+    // 0 turns predictive selection off
+    float predictionConfidence = 0f;
+
+    private BubbleActions(ViewGroup root, View view) {
+        this.actionContext = new ActionContext(view);
         this.indicator = ResourcesCompat.getDrawable(root.getResources(), R.drawable.bubble_actions_indicator, root.getContext().getTheme());
         this.root = root;
-        overlay = new BubbleActionOverlay(root.getContext());
-        overlay.setOnDragListener(overlayDragListener);
-
-        // Use reflection to get the ViewRootImpl
-        try {
-            Method method = root.getClass().getMethod("getViewRootImpl");
-            viewRootImpl = method.invoke(root);
-            getLastTouchPoint = viewRootImpl.getClass().getMethod("getLastTouchPoint", Point.class);
-        } catch (IllegalAccessException e) {
-            e.printStackTrace();
-        } catch (InvocationTargetException e) {
-            e.printStackTrace();
-        } catch (NoSuchMethodException e) {
-            e.printStackTrace();
+        long acquireStart = System.nanoTime();
+        overlay = OverlayPool.acquire(root);
+        overlayAcquireNanos = System.nanoTime() - acquireStart;
+        OverlayPool.register(root, this);
+        if (ViewCompat.isAttachedToWindow(root)) {
+            TouchPointRecorder.install(root);
         }
     }
 
     /**
-     * Open up BubbleActions on a view.
+     * Open up BubbleActions on a view. The instance may be kept and shown again, until the view's
+     * window is detached or its activity is destroyed. It then lets go of the window, its actions
+     * and their callbacks, so keeping it does not leak the activity.
      *
      * @param view the view that the BubbleActions are contextually connected to. The
      *             view must have a root view.
@@ -77,7 +130,79 @@ public final class BubbleActions {
         }
 
 
-        return new BubbleActions((ViewGroup) rootView);
+        return new BubbleActions((ViewGroup) rootView, view);
+    }
+
+    /**
+     * Prepare the overlay of an activity ahead of its first long press, so the first call to
+     * {@link #show()} is as fast as later ones. See {@link #prewarm(ViewGroup)}.
+     *
+     * @param activity the activity to prepare the overlay for
+     */
+    public static void prewarm(Activity activity) {
+        prewarm((ViewGroup) activity.getWindow().getDecorView());
+    }
+
+    /**
+     * Prepare the overlay of a root view ahead of its first long press, so the first call to
+     * {@link #show()} does not pay for constructing and inflating it. The work is done once the
+     * main thread is idle after the root's first frame. Must be called on the main thread, usually
+     * from onCreate. Whether it finished before the first long press is reported by
+     * {@link InteractionMetrics#isPrewarmed()}.
+     *
+     * @param root the root view BubbleActions will be shown in
+     */
+    public static void prewarm(final ViewGroup root) {
+        // runnables posted to a view run after the traversal that attaches it
+        root.post(new Runnable() {
+            @Override
+            public void run() {
+                Looper.myQueue().addIdleHandler(new MessageQueue.IdleHandler() {
+                    @Override
+                    public boolean queueIdle() {
+                        // the activity may have been finished while waiting
+                        if (ViewCompat.isAttachedToWindow(root)) {
+                            TouchPointRecorder.install(root);
+                            OverlayPool.prewarm(root);
+                        }
+                        return false;
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Build the overlay of an activity on a worker thread. See {@link #prewarmInBackground(ViewGroup)}.
+     *
+     * @param activity the activity to build the overlay for
+     */
+    public static void prewarmInBackground(Activity activity) {
+        prewarmInBackground((ViewGroup) activity.getWindow().getDecorView());
+    }
+
+    /**
+     * Build the overlay of a root view on a worker thread, so preparing it does not add to the
+     * main thread's time at all. This suits activities with a heavy startup, where even idle time
+     * after the first frame is scarce. If BubbleActions are shown before the overlay is ready, it
+     * is built on the main thread as usual. Must be called on the main thread.
+     * <p>
+     * The bubble views are inflated without the factories of the activity's LayoutInflater, so
+     * for example appcompat will not replace them with its own widgets.
+     *
+     * @param root the root view BubbleActions will be shown in
+     */
+    public static void prewarmInBackground(final ViewGroup root) {
+        BackgroundOverlayBuilder.start(root);
+        // runnables posted to a view run after the traversal that attaches it
+        root.post(new Runnable() {
+            @Override
+            public void run() {
+                if (ViewCompat.isAttachedToWindow(root)) {
+                    TouchPointRecorder.install(root);
+                }
+            }
+        });
     }
 
     /**
@@ -87,7 +212,7 @@ public final class BubbleActions {
      * @return the BubbleActions instance that called this method
      */
     public BubbleActions withTypeface(Typeface typeface) {
-        overlay.setLabelTypeface(typeface);
+        this.typeface = typeface;
         return this;
     }
 
@@ -99,6 +224,7 @@ public final class BubbleActions {
      * @return the BubbleActions instance that called this method
      */
     public BubbleActions withIndicator(int indicatorRes) {
+        requireRoot();
         this.indicator = ResourcesCompat.getDrawable(root.getResources(), indicatorRes, root.getContext().getTheme());
         return this;
     }
@@ -114,6 +240,35 @@ public final class BubbleActions {
         return this;
     }
 
+    /**
+     * Set the bubble shown by lazy actions until their drawable arrives. The default is a
+     * semi-transparent circle.
+     *
+     * @param placeholderRes drawable resource id of the placeholder bubble
+     * @return the BubbleActions instance that called this method
+     */
+    public BubbleActions withPlaceholder(int placeholderRes) {
+        requireRoot();
+        this.placeholder = ResourcesCompat.getDrawable(root.getResources(), placeholderRes, root.getContext().getTheme());
+        return this;
+    }
+
+    /**
+     * Set the bubble shown by lazy actions until their drawable arrives. The default is a
+     * semi-transparent circle.
+     *
+     * @param placeholder drawable of the placeholder bubble
+     * @return the BubbleActions instance that called this method
+     */
+    public BubbleActions withPlaceholder(Drawable placeholder) {
+        if (placeholder == null) {
+            throw new IllegalArgumentException(TAG + ": the placeholder must not be null.");
+        }
+
+        this.placeholder = placeholder;
+        return this;
+    }
+
     /**
      * Set the animation interpolator of the bubble translation
      *
@@ -121,7 +276,7 @@ public final class BubbleActions {
      * @return the BubbleActions instance that called this method
      */
     public BubbleActions withInterpolator(Interpolator interpolator) {
-        overlay.setInterpolator(interpolator);
+        this.interpolator = interpolator;
         return this;
     }
 
@@ -132,50 +287,192 @@ public final class BubbleActions {
      * @return the BubbleActionsInstance that called this method
      */
     public BubbleActions withDuration(int duration) {
-        overlay.setAnimationDuration(duration);
+        this.animationDuration = duration;
+        return this;
+    }
+
+    /**
+     * Render the bubbles and the indicator into hardware layers while they animate in and out. The
+     * layers are removed again as soon as each animation ends. This is off by default, turn it on
+     * if the bubbles are expensive to draw, for example with complex layered drawables. Has no
+     * effect with {@link #RENDER_MODE_CANVAS}.
+     *
+     * @param hardwareLayers whether to use hardware layers during the animations
+     * @return the BubbleActions instance that called this method
+     */
+    public BubbleActions withHardwareLayers(boolean hardwareLayers) {
+        this.hardwareLayers = hardwareLayers;
+        return this;
+    }
+
+    /**
+     * Report the timings of every interaction, from {@link #show()} until the overlay is removed.
+     * Reporting reuses a single {@link InteractionMetrics}, so it can be left on in release builds.
+     *
+     * @param metricsListener the listener to report to, or null to stop reporting
+     * @return the BubbleActions instance that called this method
+     */
+    public BubbleActions withMetricsListener(MetricsListener metricsListener) {
+        this.metricsListener = metricsListener;
+        if (metricsListener == null) {
+            metrics = null;
+        } else if (metrics == null) {
+            metrics = new InteractionMetrics();
+        }
+        return this;
+    }
+
+    /**
+     * Set how the bubbles are rendered. Both modes look and behave the same.
+     *
+     * @param renderMode {@link #RENDER_MODE_VIEWS} or {@link #RENDER_MODE_CANVAS}
+     * @return the BubbleActions instance that called this method
+     */
+    public BubbleActions withRenderMode(int renderMode) {
+        if (renderMode != RENDER_MODE_VIEWS && renderMode != RENDER_MODE_CANVAS) {
+            throw new IllegalArgumentException(TAG + ": unknown render mode " + renderMode + ".");
+        }
+
+        this.renderMode = renderMode;
+        return this;
+    }
+
+    /**
+     * Set how the bubbles follow the finger. Both modes look and behave the same.
+     * <p>
+     * In {@link #INPUT_MODE_TOUCH} the overlay takes over the rest of the gesture from the view the
+     * actions are shown on, its touch listener is left as it is. The actions must be shown while the
+     * finger is down on that view, for example from its long click listener, and not from within
+     * a touch listener.
+     *
+     * @param inputMode {@link #INPUT_MODE_DRAG_AND_DROP} or {@link #INPUT_MODE_TOUCH}
+     * @return the BubbleActions instance that called this method
+     */
+    public BubbleActions withInputMode(int inputMode) {
+        if (inputMode != INPUT_MODE_DRAG_AND_DROP && inputMode != INPUT_MODE_TOUCH) {
+            throw new IllegalArgumentException(TAG + ": unknown input mode " + inputMode + ".");
+        }
+
+        this.inputMode = inputMode;
+        return this;
+    }
+
+    /**
+     * Set when the callback of the selected action is called. The order is always drop, then
+     * callback, then the end of the hide animation:
+     * <ul>
+     * <li>{@link #CALLBACK_DISPATCH_ON_DROP}: drop, callback, hide starts, hide ends</li>
+     * <li>{@link #CALLBACK_DISPATCH_AFTER_HIDE_FRAME}: drop, hide starts, first frame of the hide
+     * animation is drawn, callback, hide ends</li>
+     * </ul>
+     * With a callback executor, the callback is handed to the executor at that point instead.
+     *
+     * @param callbackDispatch {@link #CALLBACK_DISPATCH_ON_DROP} or
+     *                         {@link #CALLBACK_DISPATCH_AFTER_HIDE_FRAME}
+     * @return the BubbleActions instance that called this method
+     */
+    public BubbleActions withCallbackDispatch(int callbackDispatch) {
+        if (callbackDispatch != CALLBACK_DISPATCH_ON_DROP && callbackDispatch != CALLBACK_DISPATCH_AFTER_HIDE_FRAME) {
+            throw new IllegalArgumentException(TAG + ": unknown callback dispatch " + callbackDispatch + ".");
+        }
+
+        this.callbackDispatch = callbackDispatch;
+        return this;
+    }
+
+    /**
+     * Run the callback of the selected action on an executor instead of the main thread, for
+     * callbacks that do slow work such as writing to a database. The callback is handed to the
+     * executor at the point chosen by {@link #withCallbackDispatch(int)}, and may finish before or
+     * after the hide animation. Callbacks that touch views must post back to the main thread.
+     *
+     * @param callbackExecutor the executor to run callbacks on, or null to run them on the main
+     *                         thread
+     * @return the BubbleActions instance that called this method
+     */
+    public BubbleActions withCallbackExecutor(Executor callbackExecutor) {
+        this.callbackExecutor = callbackExecutor;
+        return this;
+    }
+
+    /**
+     * Highlight the bubble a fast moving finger is heading for before the finger reaches it, so
+     * its selected animation and label are already underway when it gets there. The bubble is
+     * predicted from the direction and speed of the finger. If the finger turns away, the bubble
+     * is animated back and the bubble under the finger is highlighted instead. Only the bubble
+     * under the finger is ever selected on drop. Off by default.
+     *
+     * @param minConfidence how confident a prediction has to be, between 0 and 1. Higher values
+     *                      predict later but are wrong less often. 0 turns predictive selection
+     *                      off.
+     * @return the BubbleActions instance that called this method
+     */
+    public BubbleActions withPredictiveSelection(float minConfidence) {
+        if (!(minConfidence >= 0f && minConfidence <= 1f)) {
+            throw new IllegalArgumentException(TAG + ": the confidence must be between 0 and 1.");
+        }
+
+        this.predictionConfidence = minConfidence;
+        return this;
+    }
+
+    /**
+     * Set where the touch point that the bubbles fan out from comes from. The default is
+     * {@link TouchTracker}.
+     *
+     * @param touchPointProvider provider of the touch point
+     * @return the BubbleActions instance that called this method
+     */
+    public BubbleActions withTouchPointProvider(TouchPointProvider touchPointProvider) {
+        if (touchPointProvider == null) {
+            throw new IllegalArgumentException(TAG + ": the touch point provider must not be null.");
+        }
+
+        this.touchPointProvider = touchPointProvider;
         return this;
     }
 
     /**
      * Set the actions using a menu xml resource. There are 3 requirements of the menu xml:
-     * 1. The menu cannot have more than 5 items,
+     * 1. The menu cannot have more than 12 items,
      * 2. Each menu item cannot have a submenu, and
      * 3. Each menu item must have an icon, title, and an id
+     * The inflated menu is cached, so the xml is only inflated and its titles and icons resolved the
+     * first time a menu is used with the current locale, density, night mode and theme.
      *
      * @param menuRes  The resource id of the menu
      * @param callback A callback to run on the main thread when an action is selected
      * @return the BubbleActions instance that called this method
      */
-    public BubbleActions fromMenu(int menuRes, final MenuCallback callback) {
-        Menu menu = new PopupMenu(root.getContext(), null).getMenu();
-        MenuInflater inflater = new MenuInflater(root.getContext());
-        inflater.inflate(menuRes, menu);
-
-        if (menu.size() > BubbleActionOverlay.MAX_ACTIONS) {
-            throw new IllegalArgumentException(TAG + ": menu resource cannot have more than "
-                    + BubbleActionOverlay.MAX_ACTIONS + "actions.");
+    public BubbleActions fromMenu(int menuRes, MenuCallback callback) {
+        if (callback == null) {
+            throw new IllegalArgumentException(TAG + ": the callback must not be null.");
         }
 
+        requireRoot();
+        MenuCache.Entry menu = MenuCache.get(root.getContext(), menuRes);
         for (int i = 0; i < menu.size(); i++) {
-            final MenuItem item = menu.getItem(i);
-
-            if (item.hasSubMenu() || item.getIcon() == null || item.getTitle() == null || item.getItemId() == 0) {
-                throw new IllegalArgumentException(TAG + ": menu resource cannot have a submenu and " +
-                        "must have an icon, title, and id.");
-            }
-
-            final int id = item.getItemId();
-            addAction(item.getTitle(), item.getIcon(), new Callback() {
-                @Override
-                public void doAction() {
-                    callback.doAction(id);
-                }
-            });
+            appendAction(new Action(menu.titles[i], menu.icons[i], callback, menu.ids[i]));
         }
 
         return this;
     }
 
+    /**
+     * Use the actions of a prebuilt {@link ActionSet}. This replaces any actions added so far. The
+     * set is shared rather than copied, so using it does not allocate or resolve any drawables.
+     * Actions added after this call are appended after the set's actions.
+     *
+     * @param actionSet the actions to show
+     * @return the BubbleActions instance that called this method
+     */
+    public BubbleActions withActions(ActionSet actionSet) {
+        actions = actionSet.actions;
+        numActions = actionSet.size();
+        sharedActions = true;
+        return this;
+    }
+
     /**
      * Add an action using resource ids. The foreground is usually an icon signifying the action
      * that the user will be performing. The background is used to determine shadow, although if the
@@ -189,9 +486,11 @@ public final class BubbleActions {
      * @return the BubbleActions instance that called this method
      */
     public BubbleActions addAction(CharSequence actionName, int drawableRes, Callback callback) {
+        requireRoot();
         Resources resources = root.getResources();
         Resources.Theme theme = root.getContext().getTheme();
         addAction(actionName, ResourcesCompat.getDrawable(resources, drawableRes, theme), callback);
+        actions[numActions - 1].bubbleRes = drawableRes;
         return this;
     }
 
@@ -205,10 +504,6 @@ public final class BubbleActions {
      * @return the BubbleActions instance that called this method
      */
     public BubbleActions addAction(CharSequence actionName, Drawable drawable, Callback callback) {
-        if (numActions >= actions.length) {
-            throw new IllegalStateException(TAG + ": cannot add more than " + BubbleActionOverlay.MAX_ACTIONS + " actions.");
-        }
-
         if (drawable == null) {
             throw new IllegalArgumentException(TAG + ": the drawable cannot resolve to null.");
         }
@@ -217,27 +512,101 @@ public final class BubbleActions {
             throw new IllegalArgumentException(TAG + ": the callback must not be null.");
         }
 
-        actions[numActions] = new Action(actionName, drawable, callback);
-        numActions++;
+        appendAction(new Action(actionName, drawable, callback));
 
         return this;
     }
 
+    /**
+     * Add an action whose label and drawable are supplied by an {@link ActionProvider} every time
+     * the actions are shown, for example an avatar or an icon loaded from the network. The
+     * overlay does not wait for the content: until it first arrives, the action is shown with the
+     * placeholder label and a placeholder bubble, see {@link #withPlaceholder(int)}. Later showings
+     * start from the last content that arrived.
+     *
+     * @param placeholderLabel The label displayed above the bubble until the provider sets one
+     * @param provider         Supplies the label and drawable of the action
+     * @param callback         A callback run on the main thread when the action is selected
+     * @return the BubbleActions instance that called this method
+     */
+    public BubbleActions addLazyAction(CharSequence placeholderLabel, ActionProvider provider, Callback callback) {
+        if (provider == null) {
+            throw new IllegalArgumentException(TAG + ": the provider must not be null.");
+        }
+
+        if (callback == null) {
+            throw new IllegalArgumentException(TAG + ": the callback must not be null.");
+        }
+
+        appendAction(new Action(placeholderLabel, provider, callback));
+
+        return this;
+    }
+
+    private void appendAction(Action action) {
+        if (sharedActions) {
+            // never modify the array of an ActionSet
+            Action[] copy = new Action[BubbleActionOverlay.MAX_ACTIONS];
+            System.arraycopy(actions, 0, copy, 0, numActions);
+            actions = copy;
+            sharedActions = false;
+        }
+
+        if (numActions >= actions.length) {
+            throw new IllegalStateException(TAG + ": cannot add more than " + BubbleActionOverlay.MAX_ACTIONS + " actions.");
+        }
+
+        actions[numActions] = action;
+        numActions++;
+    }
+
     /**
      * Show the bubble actions. Internally this will do 3 things:
      * 1. Add the overlay to the root view
-     * 2. Use reflection to get the last touched xy location
+     * 2. Get the last touched xy location from the {@link TouchPointProvider}
      * 3. Animate the overlay in
+     * Does nothing once the window of the view has gone away, see {@link #on(View)}.
      */
     public void show() {
+        if (root == null) {
+            Log.w(TAG, "The window of the view has gone away, not showing BubbleActions.");
+            return;
+        }
+
         if (showing) {
             return;
         }
 
-        if (overlay.getParent() == null) {
-            root.addView(overlay);
+        if (prepared && !isPreparedOverlayIntact()) {
+            // another instance set the pooled overlay up in the meantime, start over
+            prepared = false;
+        }
+
+        if (prepared) {
+            // only the animation is left to run
+            prepared = false;
+            if (metrics != null) {
+                metrics.showTime = System.nanoTime();
+            }
+            addOverlay();
+            startOverlay();
+            return;
         }
 
+        provideActions();
+
+        if (metrics != null) {
+            resetMetrics();
+            metrics.showTime = System.nanoTime();
+        }
+
+        addOverlay();
+
+        // bubble slots are sized from their measured labels, so only the overlay itself has to be
+        // laid out before the bubbles can be positioned, not any bubble views that are added here
+        overlay.setRenderMode(renderMode);
+        overlay.ensureBubbleViews(numActions);
+
         if (ViewCompat.isLaidOut(overlay)) {
             showOverlay();
         } else {
@@ -255,45 +624,254 @@ public final class BubbleActions {
         return showing;
     }
 
-    private void showOverlay() {
-        // use reflection to get the last touched xy location
-        try {
-            getLastTouchPoint.invoke(viewRootImpl, touchPoint);
-            overlay.setupOverlay(touchPoint.x, touchPoint.y, this);
-        } catch (InvocationTargetException e) {
-            e.printStackTrace();
-            return;
-        } catch (IllegalAccessException e) {
-            e.printStackTrace();
+    /**
+     * Do all of the work of {@link #show()} except adding the overlay to the root and animating it
+     * in: bind the actions, lay the overlay out at the size of the root and position the bubbles
+     * at the current touch point. A following call to show() then only has to start the
+     * animation. Undo with {@link #cancelPrepared()}.
+     *
+     * @return true if the overlay was prepared, false if show() has to do all of the work
+     */
+    boolean prepare() {
+        int width = root != null ? root.getWidth() : 0;
+        int height = root != null ? root.getHeight() : 0;
+        if (showing || prepared || width == 0 || height == 0 || overlay.getParent() != null
+                || !touchPointProvider.getTouchPoint(root, touchPoint)) {
+            return false;
+        }
+
+        provideActions();
+        if (metrics != null) {
+            resetMetrics();
+        }
+
+        overlay.setRenderMode(renderMode);
+        overlay.ensureBubbleViews(numActions);
+        if (overlay.getWidth() != width || overlay.getHeight() != height || overlay.isLayoutRequested()) {
+            // the overlay fills the root, so it can be laid out before it is added to it
+            overlay.measure(View.MeasureSpec.makeMeasureSpec(width, View.MeasureSpec.EXACTLY),
+                    View.MeasureSpec.makeMeasureSpec(height, View.MeasureSpec.EXACTLY));
+            overlay.layout(0, 0, width, height);
+        }
+        setupOverlay();
+        prepared = true;
+        return true;
+    }
+
+    /**
+     * Undo {@link #prepare()} if the actions were not shown after all.
+     */
+    void cancelPrepared() {
+        if (!prepared) {
             return;
         }
 
-        overlay.setOnAttachStateChangeListener(new BubbleActionOverlay.OnAttachStateChangeListener() {
-            @Override
-            public void onViewAttachedToWindow(View v) {
-            }
+        prepared = false;
+        // the overlay is pooled, only reset it if no other instance has set it up since
+        if (isPreparedOverlayIntact()) {
+            overlay.resetBubbleViews();
+        }
+        cancelProviders();
+        if (metrics != null) {
+            metrics.reset();
+        }
+    }
 
-            @Override
-            public void onViewDetachedFromWindow(View v) {
-                // As identified in SnackBar, if we receive this event, the user did not
-                // initiate it, so hide the overlay and remove it from its parent so the state is
-                // kept in sync
-                overlay.setOnAttachStateChangeListener(null);
-                if (isShowing()) {
-                    removeOverlay();
-                }
+    private boolean isPreparedOverlayIntact() {
+        return overlay.getParent() == null && overlay.isBoundTo(actionContext);
+    }
+
+    private void resetMetrics() {
+        metrics.reset();
+        metrics.overlayAcquireNanos = overlayAcquireNanos;
+        metrics.prewarmed = overlay.prewarmed;
+    }
+
+    private void addOverlay() {
+        if (overlay.getParent() == null) {
+            if (inputMode == INPUT_MODE_TOUCH) {
+                overlay.setOnTouchListener(overlayTouchListener);
+            } else {
+                overlay.setOnDragListener(overlayDragListener);
             }
-        });
+            overlay.setAnimationListener(animationListener);
+            root.addView(overlay);
+        }
+    }
+
+    private void showOverlay() {
+        if (!touchPointProvider.getTouchPoint(root, touchPoint)) {
+            Log.w(TAG, "Unable to determine the touch point, not showing BubbleActions.");
+            removeOverlay();
+            return;
+        }
+
+        setupOverlay();
+        startOverlay();
+    }
 
-        overlay.startDrag();
+    private void setupOverlay() {
+        long setupStart = System.nanoTime();
+        overlay.setupOverlay(touchPoint.x, touchPoint.y, this);
+        if (metrics != null) {
+            metrics.setupNanos = System.nanoTime() - setupStart;
+        }
+    }
+
+    private void startOverlay() {
+        overlay.setOnAttachStateChangeListener(overlayAttachListener);
+
+        if (inputMode == INPUT_MODE_TOUCH) {
+            TouchTracker.getInstance().startSession(actionContext.view, root, touchSession, touchPoint.x, touchPoint.y, !touchesForwarded);
+            overlay.animateShow();
+        } else {
+            long dragStart = System.nanoTime();
+            overlay.startDrag();
+            if (metrics != null) {
+                metrics.dragStartNanos = System.nanoTime() - dragStart;
+            }
+        }
     }
 
     void removeOverlay() {
         showing = false;
+        overlay.setOnDragListener(null);
+        overlay.setOnTouchListener(null);
+        TouchTracker.getInstance().endSession(touchSession);
+        TouchPointRecorder recorder = TouchPointRecorder.find(root);
+        if (recorder != null) {
+            // the touch the actions were shown from is over
+            recorder.clear();
+        }
+        overlay.setAnimationListener(null);
+        // the overlay is pooled, so it must not keep this instance alive after it is removed
+        overlay.setOnAttachStateChangeListener(null);
         root.removeView(overlay);
         overlay.resetBubbleViews();
+        cancelProviders();
+
+        if (metricsListener != null && metrics.showTime != 0) {
+            metricsListener.onInteractionMetrics(metrics);
+            metrics.reset();
+        }
+    }
+
+    /**
+     * Let go of the root, the overlay and everything the actions reference, because the window of
+     * the root has gone away. Called by {@link OverlayPool}. The instance can not be shown again.
+     */
+    void release() {
+        if (root == null) {
+            return;
+        }
+
+        if (overlay.getParent() == root) {
+            removeOverlay();
+        }
+        cancelPrepared();
+        cancelProviders();
+
+        root = null;
+        overlay = null;
+        actions = NO_ACTIONS;
+        numActions = 0;
+        sharedActions = true;
+        actionContext.view = null;
+        actionContext.positionSource = null;
+        indicator = null;
+        placeholder = null;
+        typeface = null;
+        interpolator = null;
+        metrics = null;
+        metricsListener = null;
+        callbackExecutor = null;
+        touchPointProvider = TouchTracker.getInstance();
+    }
+
+    private void requireRoot() {
+        if (root == null) {
+            throw new IllegalStateException(TAG + ": the window of the view has gone away.");
+        }
+    }
+
+    /**
+     * Ask the providers of lazy actions for their content. Content that is set right away is bound
+     * without ever showing the placeholder.
+     */
+    void provideActions() {
+        for (int i = 0; i < numActions; i++) {
+            Action action = actions[i];
+            if (action.provider == null) {
+                continue;
+            }
+
+            if (action.content != null) {
+                action.content.cancel();
+            }
+            if (action.bubble == null) {
+                action.bubble = newPlaceholder();
+            }
+            action.content = new ActionContent(this, action, actionContext);
+            action.provider.provideAction(action.content);
+        }
+    }
+
+    private Drawable newPlaceholder() {
+        if (placeholder == null) {
+            placeholder = ResourcesCompat.getDrawable(root.getResources(), R.drawable.bubble_actions_placeholder, root.getContext().getTheme());
+        }
+
+        // every bubble gets its own copy, a drawable can only be drawn by one view
+        Drawable.ConstantState state = placeholder.getConstantState();
+        return state != null ? state.newDrawable(root.getResources()) : placeholder;
+    }
+
+    private void cancelProviders() {
+        for (int i = 0; i < numActions; i++) {
+            Action action = actions[i];
+            if (action.content != null) {
+                action.content.cancel();
+                action.content = null;
+            }
+        }
     }
 
+    /**
+     * Called on the main thread when a lazy action's content has arrived.
+     */
+    void onActionContentChanged(Action action) {
+        overlay.updateAction(action);
+    }
+
+    private final BubbleActionOverlay.OnAttachStateChangeListener overlayAttachListener = new BubbleActionOverlay.OnAttachStateChangeListener() {
+        @Override
+        public void onViewAttachedToWindow(View v) {
+        }
+
+        @Override
+        public void onViewDetachedFromWindow(View v) {
+            // As identified in SnackBar, if we receive this event, the user did not
+            // initiate it, so hide the overlay and remove it from its parent so the state is
+            // kept in sync
+            overlay.setOnAttachStateChangeListener(null);
+            if (isShowing()) {
+                removeOverlay();
+            }
+        }
+    };
+
+    private final BubbleActionOverlay.AnimationListener animationListener = new BubbleActionOverlay.AnimationListener() {
+        @Override
+        public void onShowAnimationEnd() {
+            showing = true;
+        }
+
+        @Override
+        public void onHideAnimationEnd() {
+            removeOverlay();
+        }
+    };
+
     private View.OnDragListener overlayDragListener = new View.OnDragListener() {
         @Override
         public boolean onDrag(View v, DragEvent event) {
@@ -308,42 +886,25 @@ public final class BubbleActions {
                             overlay.requestLayout();
                         }
 
-                        overlay.getAnimateSetShow()
-                                .setListener(new ViewPropertyAnimatorListenerAdapter() {
-                                    @Override
-                                    public void onAnimationStart(View view) {
-                                        super.onAnimationStart(view);
-                                        overlay.animateDimBackground();
-                                    }
-
-                                    @Override
-                                    public void onAnimationEnd(View view) {
-                                        super.onAnimationEnd(view);
-                                        showing = true;
-                                    }
-                                })
-                                .start();
+                        overlay.animateShow();
                         return true;
                     } else {
                         return false;
                     }
 
+                case DragEvent.ACTION_DRAG_LOCATION:
+                    overlay.onDragLocation(event.getX(), event.getY());
+                    return true;
+
+                case DragEvent.ACTION_DRAG_EXITED:
+                    overlay.clearHover();
+                    return true;
+
+                case DragEvent.ACTION_DROP:
+                    return overlay.dropOnHoveredSlot();
+
                 case DragEvent.ACTION_DRAG_ENDED:
-                    overlay.getAnimateSetHide()
-                            .setListener(new ViewPropertyAnimatorListenerAdapter() {
-                                @Override
-                                public void onAnimationStart(View view) {
-                                    super.onAnimationStart(view);
-                                    overlay.animateUndimBackground();
-                                }
-
-                                @Override
-                                public void onAnimationEnd(View view) {
-                                    super.onAnimationEnd(view);
-                                    removeOverlay();
-                                }
-                            })
-                            .start();
+                    overlay.animateHide();
                     return true;
             }
 
@@ -351,4 +912,48 @@ public final class BubbleActions {
         }
     };
 
+    private final TouchTracker.Session touchSession = new TouchTracker.Session() {
+        @Override
+        public void onSessionTouch(int actionMasked, float x, float y) {
+            switch (actionMasked) {
+                case MotionEvent.ACTION_MOVE:
+                    overlay.onDragLocation(x, y);
+                    break;
+
+                case MotionEvent.ACTION_UP:
+                    overlay.onDragLocation(x, y);
+                    overlay.dropOnHoveredSlot();
+                    overlay.animateHide();
+                    break;
+
+                case MotionEvent.ACTION_CANCEL:
+                    overlay.animateHide();
+                    break;
+            }
+        }
+    };
+
+    /**
+     * In {@link #INPUT_MODE_TOUCH} the overlay covers the window and swallows touches. The gesture
+     * it took over is forwarded to the session. Any other new touch means the gesture ended before
+     * the session started, so treat it as a dismissal.
+     */
+    private final View.OnTouchListener overlayTouchListener = new View.OnTouchListener() {
+        @Override
+        public boolean onTouch(View v, MotionEvent event) {
+            TouchTracker tracker = TouchTracker.getInstance();
+            if (tracker.isTakingOver()) {
+                return true;
+            }
+
+            if (event.getActionMasked() == MotionEvent.ACTION_DOWN) {
+                tracker.endSession(touchSession);
+                overlay.animateHide();
+            } else {
+                tracker.onTouch(v, event);
+            }
+            return true;
+        }
+    };
+
 }
@@ -0,0 +1,203 @@
+package me.samthompson.bubbleactions;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Rect;
+import android.graphics.drawable.BitmapDrawable;
+import android.graphics.drawable.Drawable;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A process wide cache of bubbles rasterized into bitmaps, used by
+ * {@link BubbleActions#RENDER_MODE_CANVAS}. In that mode the overlay redraws every bubble on every
+ * frame of the show and hover animations, which is costly for vector drawables and the layer
+ * lists made by {@link BubbleUtil#makeBubbleDrawable}. With the cache, each bubble is drawn once per
+ * drawable state, size and density, and then drawn from its bitmap.
+ * <p>
+ * Sprites are keyed by the drawable resource the bubble was added with, so every showing of an
+ * action shares its sprites. Bubbles added as drawables have no stable key and, like bitmaps, are
+ * never cached. A resource is drawn the way it looked the first time, so a drawable that resolves
+ * theme attributes is drawn in the first theme it was shown in. The least recently used sprites
+ * are evicted once the cache grows over its budget, see {@link #setMaxBytes(int)}. Must only be
+ * used on the main thread.
+ */
+public final class BubbleSpriteCache {
+
+    /**
+     * The default memory budget of 4 MiB. At xxxhdpi a sprite of the default 52dp bubble takes
+     * 208 x 208 x 4 bytes, about 169 KiB, so this just fits 12 bubbles in both of their states
+     * there. Raise it for more or larger bubbles.
+     */
+    public static final int DEFAULT_MAX_BYTES = 4 * 1024 * 1024;
+
+    private static final String TAG = BubbleSpriteCache.class.getSimpleName();
+
+    private static final BubbleSpriteCache INSTANCE = new BubbleSpriteCache();
+
+    // access ordered, so iteration starts at the least recently used sprite
+    private final LinkedHashMap<SpriteKey, Bitmap> sprites = new LinkedHashMap<>(16, 0.75f, true);
+    // reused for lookups, so hits do not allocate
+    private final SpriteKey lookupKey = new SpriteKey();
+    private final Rect savedBounds = new Rect();
+    private int maxBytes = DEFAULT_MAX_BYTES;
+    private int sizeBytes = 0;
+    private int hitCount = 0;
+    private int missCount = 0;
+
+    private BubbleSpriteCache() {
+    }
+
+    /**
+     * @return the process wide sprite cache
+     */
+    public static BubbleSpriteCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Set the memory budget of the cache. Sprites are evicted right away if the cache is over the
+     * new budget. A budget of 0 turns the cache off, and bubbles are drawn directly.
+     *
+     * @param maxBytes the most memory the sprites may take up, in bytes
+     */
+    public void setMaxBytes(int maxBytes) {
+        if (maxBytes < 0) {
+            throw new IllegalArgumentException(TAG + ": the budget must not be negative.");
+        }
+
+        this.maxBytes = maxBytes;
+        trimTo(maxBytes);
+    }
+
+    /**
+     * @return the memory budget of the cache, in bytes
+     */
+    public int getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * @return the memory taken up by the cached sprites, in bytes
+     */
+    public int getSizeBytes() {
+        return sizeBytes;
+    }
+
+    /**
+     * @return how many times a bubble was drawn from an already cached sprite
+     */
+    public int getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * @return how many times a bubble had to be rasterized, or could not be cached
+     */
+    public int getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * Drop every sprite and reset the hit and miss counts.
+     */
+    public void clear() {
+        trimTo(0);
+        hitCount = 0;
+        missCount = 0;
+    }
+
+    /**
+     * Get the sprite of a bubble in its current drawable state, rasterizing it on a miss.
+     *
+     * @param bubbleRes  the drawable resource the bubble was loaded from, or 0 if it has none
+     * @param bubble     the bubble, with its drawable state already set
+     * @param selected   whether the drawable state is the selected one
+     * @param size       the width and height of the sprite in pixels
+     * @param densityDpi the density the sprite is drawn for
+     * @return the sprite, or null if the bubble should be drawn directly
+     */
+    Bitmap get(int bubbleRes, Drawable bubble, boolean selected, int size, int densityDpi) {
+        if (maxBytes == 0 || bubbleRes == 0 || bubble instanceof BitmapDrawable || size <= 0) {
+            return null;
+        }
+
+        lookupKey.set(bubbleRes, selected, size, densityDpi);
+        Bitmap sprite = sprites.get(lookupKey);
+        if (sprite != null) {
+            hitCount++;
+            return sprite;
+        }
+
+        missCount++;
+        int spriteBytes = size * size * 4;
+        if (spriteBytes > maxBytes) {
+            return null;
+        }
+
+        sprite = rasterize(bubble, size, densityDpi);
+        trimTo(maxBytes - spriteBytes);
+        SpriteKey key = new SpriteKey();
+        key.set(bubbleRes, selected, size, densityDpi);
+        sprites.put(key, sprite);
+        sizeBytes += spriteBytes;
+        return sprite;
+    }
+
+    private Bitmap rasterize(Drawable bubble, int size, int densityDpi) {
+        Bitmap sprite = Bitmap.createBitmap(size, size, Bitmap.Config.ARGB_8888);
+        sprite.setDensity(densityDpi);
+        bubble.copyBounds(savedBounds);
+        bubble.setBounds(0, 0, size, size);
+        bubble.draw(new Canvas(sprite));
+        bubble.setBounds(savedBounds);
+        return sprite;
+    }
+
+    private void trimTo(int bytes) {
+        Iterator<Map.Entry<SpriteKey, Bitmap>> iterator = sprites.entrySet().iterator();
+        while (sizeBytes > bytes && iterator.hasNext()) {
+            Bitmap sprite = iterator.next().getValue();
+            iterator.remove();
+            // evicted sprites may still be drawn by an overlay on screen, so they are left to the
+            // garbage collector rather than recycled
+            sizeBytes -= sprite.getWidth() * sprite.getHeight() * 4;
+        }
+    }
+
+    private static final class SpriteKey {
+        private int bubbleRes;
+        private boolean selected;
+        private int size;
+        private int densityDpi;
+
+        void set(int bubbleRes, boolean selected, int size, int densityDpi) {
+            this.bubbleRes = bubbleRes;
+            this.selected = selected;
+            this.size = size;
+            this.densityDpi = densityDpi;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof SpriteKey)) {
+                return false;
+            }
+
+            SpriteKey other = (SpriteKey) o;
+            return bubbleRes == other.bubbleRes && selected == other.selected && size == other.size
+                    && densityDpi == other.densityDpi;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = bubbleRes;
+            result = 31 * result + (selected ? 1 : 0);
+            result = 31 * result + size;
+            result = 31 * result + densityDpi;
+            return result;
+        }
+    }
+}
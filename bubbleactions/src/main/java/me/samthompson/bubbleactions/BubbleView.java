@@ -1,11 +1,11 @@
 package me.samthompson.bubbleactions;
 
+import android.animation.ValueAnimator;
 import android.content.Context;
-import android.support.v4.view.ViewCompat;
-import android.support.v4.view.ViewPropertyAnimatorListenerAdapter;
-import android.view.DragEvent;
 import android.view.LayoutInflater;
-import android.view.View;
+import android.view.animation.AccelerateDecelerateInterpolator;
+import android.view.animation.Interpolator;
+import android.view.animation.LinearInterpolator;
 import android.widget.ImageView;
 import android.widget.LinearLayout;
 import android.widget.TextView;
@@ -16,102 +16,92 @@ import android.widget.TextView;
 class BubbleView extends LinearLayout {
 
     // In order to prevent clipping, the bubble starts out smaller than the space it's given
-    private static final float DESELECTED_SCALE = 0.85f;
+    static final float DESELECTED_SCALE = 0.85f;
 
-    private static final float SELECTED_SCALE = 1f;
+    static final float SELECTED_SCALE = 1f;
 
-    private static final int ANIMATION_DURATION = 150;
+    static final int ANIMATION_DURATION = 150;
+
+    // Interpolators are stateless, so they can be shared by every bubble
+    static final Interpolator LINEAR_INTERPOLATOR = new LinearInterpolator();
+    static final Interpolator ACCELERATE_DECELERATE_INTERPOLATOR = new AccelerateDecelerateInterpolator();
 
-    Callback callback;
     TextView textView;
     ImageView imageView;
 
+    // A single animator drives the selection state in both directions, so hovering back and
+    // forth across bubbles does not allocate. The animator runs linearly from 0 to 1 and the
+    // update listener maps that onto the range between selectFrom and selectTo.
+    final ValueAnimator selectAnimator;
+    private float selectFrom = 0f;
+    private float selectTo = 0f;
+    private float selectFraction = 0f;
+
     public BubbleView(Context context) {
+        this(context, LayoutInflater.from(context));
+    }
+
+    BubbleView(Context context, LayoutInflater inflater) {
         super(context);
 
         setOrientation(VERTICAL);
-        LayoutInflater.from(context).inflate(R.layout.bubble_actions_bubble_item, this, true);
+        inflater.inflate(R.layout.bubble_actions_bubble_item, this, true);
         textView = (TextView) getChildAt(0);
         imageView = (ImageView) getChildAt(1);
-        imageView.setOnDragListener(dragListener);
         imageView.setScaleX(DESELECTED_SCALE);
         imageView.setScaleY(DESELECTED_SCALE);
+
+        selectAnimator = ValueAnimator.ofFloat(0f, 1f);
+        selectAnimator.setDuration(ANIMATION_DURATION);
+        selectAnimator.setInterpolator(LINEAR_INTERPOLATOR);
+        selectAnimator.addUpdateListener(selectUpdateListener);
     }
 
     void resetAppearance() {
+        selectAnimator.cancel();
         setVisibility(INVISIBLE);
-        imageView.setScaleX(DESELECTED_SCALE);
-        imageView.setScaleY(DESELECTED_SCALE);
+        setSelectFraction(0f);
         imageView.setSelected(false);
         textView.setVisibility(INVISIBLE);
     }
 
     /**
-     * OnDragListener for the ImageView. The correct behavior is only to register a drag enter only
-     * if we enter the ImageView (otherwise it would still register a drag enter if we touch the
-     * TextView).
+     * Animate the bubble to its selected or deselected appearance, starting from wherever it
+     * currently is. When selected, the bubble grows and the label fades in.
+     *
+     * @param selected whether the user is hovering over the bubble
      */
-    OnDragListener dragListener = new OnDragListener() {
+    void animateSelected(boolean selected) {
+        imageView.setSelected(selected);
+        selectAnimator.cancel();
+        selectFrom = selectFraction;
+        selectTo = selected ? 1f : 0f;
+        if (selected) {
+            textView.setVisibility(VISIBLE);
+        }
+        selectAnimator.start();
+    }
+
+    private void setSelectFraction(float fraction) {
+        selectFraction = fraction;
+        float scale = DESELECTED_SCALE + (SELECTED_SCALE - DESELECTED_SCALE) * fraction;
+        imageView.setScaleX(scale);
+        imageView.setScaleY(scale);
+        textView.setAlpha(fraction);
+    }
+
+    private final ValueAnimator.AnimatorUpdateListener selectUpdateListener = new ValueAnimator.AnimatorUpdateListener() {
         @Override
-        public boolean onDrag(View v, DragEvent event) {
-            final int action = event.getAction();
-
-            // Gotcha: you need to return true for drag start
-            switch (action) {
-                case DragEvent.ACTION_DRAG_STARTED:
-                    return DragUtils.isDragForMe(event.getClipDescription().getLabel());
-                case DragEvent.ACTION_DRAG_ENDED:
-                    return true;
-                case DragEvent.ACTION_DRAG_ENTERED:
-                    imageView.setSelected(true);
-                    ViewCompat.animate(imageView)
-                            .scaleX(SELECTED_SCALE)
-                            .scaleY(SELECTED_SCALE)
-                            .setListener(new ViewPropertyAnimatorListenerAdapter() {
-                                @Override
-                                public void onAnimationStart(View view) {
-                                    super.onAnimationStart(view);
-                                    textView.setVisibility(VISIBLE);
-                                    ViewCompat.animate(textView)
-                                            .alpha(1f)
-                                            .setListener(null)
-                                            .setDuration(ANIMATION_DURATION);
-                                }
-                            })
-                            .setDuration(ANIMATION_DURATION);
-
-                    return true;
-                case DragEvent.ACTION_DRAG_EXITED:
-                    imageView.setSelected(false);
-                    ViewCompat.animate(imageView)
-                            .scaleX(DESELECTED_SCALE)
-                            .scaleY(DESELECTED_SCALE)
-                            .setDuration(ANIMATION_DURATION)
-                            .setListener(new ViewPropertyAnimatorListenerAdapter() {
-                                @Override
-                                public void onAnimationStart(View view) {
-                                    super.onAnimationStart(view);
-                                    ViewCompat.animate(textView)
-                                            .alpha(0f)
-                                            .setListener(new ViewPropertyAnimatorListenerAdapter() {
-                                                @Override
-                                                public void onAnimationEnd(View view) {
-                                                    super.onAnimationEnd(view);
-                                                    textView.setVisibility(INVISIBLE);
-                                                }
-                                            })
-                                            .setDuration(ANIMATION_DURATION);
-                                }
-                            });
-
-                    return true;
-                case DragEvent.ACTION_DROP:
-                    callback.doAction();
-
-                    // we return false here so we are notified in the BubbleActionOverlay
-                    return true;
+        public void onAnimationUpdate(ValueAnimator animation) {
+            float fraction = animation.getAnimatedFraction();
+            float eased = ACCELERATE_DECELERATE_INTERPOLATOR.getInterpolation(fraction);
+            setSelectFraction(selectFrom + (selectTo - selectFrom) * eased);
+
+            // an AnimatorListener would copy its listener list on every start and end, so detect
+            // the end here instead
+            if (fraction >= 1f && selectTo == 0f) {
+                textView.setVisibility(INVISIBLE);
             }
-            return false;
         }
     };
 
@@ -2,7 +2,10 @@ package me.samthompson.bubbleactions;
 
 /**
  * A {@link Callback#doAction()} call cooresponding to a particular action is invoked on the
- * main thread when the user lifts their finger from the screen while on top of the action.
+ * main thread when the user lifts their finger from the screen while on top of the action. See
+ * {@link BubbleActions#withCallbackDispatch(int)} and
+ * {@link BubbleActions#withCallbackExecutor(java.util.concurrent.Executor)} to change when and
+ * where it is invoked.
  */
 public interface Callback {
     void doAction();
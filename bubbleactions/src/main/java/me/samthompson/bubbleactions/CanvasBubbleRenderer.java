@@ -0,0 +1,206 @@
+package me.samthompson.bubbleactions;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.RectF;
+import android.graphics.Typeface;
+import android.graphics.drawable.Drawable;
+import android.os.Build;
+import android.support.v4.content.ContextCompat;
+import android.text.TextPaint;
+
+/**
+ * Draws the indicator, bubbles and labels of a {@link BubbleActionOverlay} directly onto its
+ * canvas, instead of using a view per bubble. Slots are measured by the same {@link SlotMeasurer}
+ * as bubble views, so both render modes look the same. All of the animated state is kept in
+ * primitive arrays that the overlay writes to.
+ * <p>
+ * Bubbles are drawn from sprites of the {@link BubbleSpriteCache} where possible, so they are not
+ * redrawn from their drawables on every frame.
+ */
+final class CanvasBubbleRenderer {
+
+    private static final int[] DESELECTED_STATE = new int[]{android.R.attr.state_enabled};
+    private static final int[] SELECTED_STATE = new int[]{android.R.attr.state_enabled, android.R.attr.state_selected};
+
+    private final TextPaint labelPaint;
+    private final Paint.FontMetricsInt labelFontMetrics = new Paint.FontMetricsInt();
+    private final Drawable labelBackground;
+    private final SlotMeasurer slotMeasurer;
+    private final float indicatorDimension;
+
+    private final CharSequence[] labels = new CharSequence[BubbleActionOverlay.MAX_ACTIONS];
+    private final int[] labelLength = new int[BubbleActionOverlay.MAX_ACTIONS];
+    private final float[] labelWidth = new float[BubbleActionOverlay.MAX_ACTIONS];
+    private final Drawable[] bubbles = new Drawable[BubbleActionOverlay.MAX_ACTIONS];
+    private final int[] bubbleRes = new int[BubbleActionOverlay.MAX_ACTIONS];
+    private final Bitmap[] sprites = new Bitmap[BubbleActionOverlay.MAX_ACTIONS];
+    private final Paint spritePaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+    private final RectF spriteBounds = new RectF();
+    // sprites are rasterized at the selected size and scaled down when deselected
+    private final int spriteSize;
+    private final int densityDpi;
+
+    // per slot state, written by the overlay
+    final float[] slotWidth = new float[BubbleActionOverlay.MAX_ACTIONS];
+    final float[] slotHeight = new float[BubbleActionOverlay.MAX_ACTIONS];
+    final float[] translationX = new float[BubbleActionOverlay.MAX_ACTIONS];
+    final float[] translationY = new float[BubbleActionOverlay.MAX_ACTIONS];
+    final float[] alpha = new float[BubbleActionOverlay.MAX_ACTIONS];
+    final float[] selectFraction = new float[BubbleActionOverlay.MAX_ACTIONS];
+
+    Drawable indicator;
+    float indicatorX;
+    float indicatorY;
+    float indicatorAlpha;
+
+    /**
+     * @param slotMeasurer the measurer of the overlay, which keeps its typeface up to date
+     */
+    CanvasBubbleRenderer(Context context, SlotMeasurer slotMeasurer) {
+        Resources resources = context.getResources();
+        this.slotMeasurer = slotMeasurer;
+        indicatorDimension = resources.getDimension(R.dimen.bubble_actions_indicator_dimension);
+        spriteSize = Math.round(slotMeasurer.bubbleDimension * BubbleView.SELECTED_SCALE);
+        densityDpi = resources.getDisplayMetrics().densityDpi;
+
+        labelPaint = new TextPaint(Paint.ANTI_ALIAS_FLAG);
+        labelPaint.setColor(ContextCompat.getColor(context, R.color.bubble_actions_text_color));
+        labelPaint.setTextSize(resources.getDimensionPixelSize(R.dimen.bubble_actions_label_text_size));
+        labelPaint.setTextAlign(Paint.Align.CENTER);
+        labelPaint.getFontMetricsInt(labelFontMetrics);
+
+        // the background is mutated so changing its alpha does not affect other users
+        labelBackground = ContextCompat.getDrawable(context, R.drawable.bubble_actions_item_name).mutate();
+    }
+
+    float getIndicatorDimension() {
+        return indicatorDimension;
+    }
+
+    void setTypeface(Typeface typeface) {
+        if (labelPaint.getTypeface() != typeface) {
+            labelPaint.setTypeface(typeface);
+            labelPaint.getFontMetricsInt(labelFontMetrics);
+        }
+    }
+
+    /**
+     * Bind an action to a slot and measure the slot.
+     */
+    void bind(int slot, Action action) {
+        Drawable bubble = action.bubble;
+        labels[slot] = action.actionName;
+        bubbles[slot] = bubble;
+        bubbleRes[slot] = action.bubbleRes;
+        bubble.setState(DESELECTED_STATE);
+        sprites[slot] = BubbleSpriteCache.getInstance().get(action.bubbleRes, bubble, false, spriteSize, densityDpi);
+        labelLength[slot] = SlotMeasurer.getLabelLength(action.actionName);
+        labelWidth[slot] = slotMeasurer.getLabelWidth(action);
+        slotWidth[slot] = slotMeasurer.getSlotWidth(action);
+        slotHeight[slot] = slotMeasurer.getSlotHeight();
+        alpha[slot] = 0f;
+        selectFraction[slot] = 0f;
+    }
+
+    /**
+     * Update the drawable state of a bubble, the same as
+     * {@link android.widget.ImageView#setSelected}.
+     */
+    void setSelected(int slot, boolean selected) {
+        if (bubbles[slot] != null) {
+            bubbles[slot].setState(selected ? SELECTED_STATE : DESELECTED_STATE);
+            sprites[slot] = BubbleSpriteCache.getInstance().get(bubbleRes[slot], bubbles[slot], selected, spriteSize, densityDpi);
+        }
+    }
+
+    /**
+     * @return the x coordinate of the center of the bubble in a slot
+     */
+    float getBubbleCenterX(int slot) {
+        return translationX[slot] + slotWidth[slot] / 2f;
+    }
+
+    /**
+     * @return the y coordinate of the center of the bubble in a slot
+     */
+    float getBubbleCenterY(int slot) {
+        return translationY[slot] + slotMeasurer.getLabelHeight() + slotMeasurer.labelMargin + slotMeasurer.bubbleDimension / 2f;
+    }
+
+    /**
+     * Release references to the bound actions.
+     */
+    void reset() {
+        for (int i = 0; i < labels.length; i++) {
+            if (bubbles[i] != null) {
+                bubbles[i].setState(DESELECTED_STATE);
+            }
+            labels[i] = null;
+            bubbles[i] = null;
+            bubbleRes[i] = 0;
+            sprites[i] = null;
+            alpha[i] = 0f;
+            selectFraction[i] = 0f;
+        }
+        indicator = null;
+        indicatorAlpha = 0f;
+    }
+
+    void draw(Canvas canvas, int numSlots) {
+        if (indicator != null && indicatorAlpha > 0f) {
+            drawWithAlpha(canvas, indicator, indicatorAlpha, (int) indicatorX, (int) indicatorY,
+                    (int) (indicatorX + indicatorDimension), (int) (indicatorY + indicatorDimension));
+        }
+
+        for (int i = 0; i < numSlots; i++) {
+            if (alpha[i] <= 0f || bubbles[i] == null) {
+                continue;
+            }
+
+            float centerX = getBubbleCenterX(i);
+            float centerY = getBubbleCenterY(i);
+            float scale = BubbleView.DESELECTED_SCALE + (BubbleView.SELECTED_SCALE - BubbleView.DESELECTED_SCALE) * selectFraction[i];
+            float halfSize = slotMeasurer.bubbleDimension * scale / 2f;
+            if (sprites[i] != null) {
+                spriteBounds.set(centerX - halfSize, centerY - halfSize, centerX + halfSize, centerY + halfSize);
+                spritePaint.setAlpha((int) (255 * alpha[i]));
+                canvas.drawBitmap(sprites[i], null, spriteBounds, spritePaint);
+            } else {
+                drawWithAlpha(canvas, bubbles[i], alpha[i], (int) (centerX - halfSize), (int) (centerY - halfSize),
+                        (int) (centerX + halfSize), (int) (centerY + halfSize));
+            }
+
+            float labelAlpha = alpha[i] * selectFraction[i];
+            if (labelAlpha > 0f && labelLength[i] > 0) {
+                float labelLeft = centerX - labelWidth[i] / 2f;
+                float labelTop = translationY[i];
+                labelBackground.setBounds((int) labelLeft, (int) labelTop,
+                        (int) (labelLeft + labelWidth[i]), (int) (labelTop + slotMeasurer.getLabelHeight()));
+                labelBackground.setAlpha((int) (255 * labelAlpha));
+                labelBackground.draw(canvas);
+
+                int textAlpha = Color.alpha(labelPaint.getColor());
+                labelPaint.setAlpha((int) (textAlpha * labelAlpha));
+                float baseline = labelTop + slotMeasurer.labelPaddingVertical - labelFontMetrics.top;
+                canvas.drawText(labels[i], 0, labelLength[i], centerX, baseline, labelPaint);
+                labelPaint.setAlpha(textAlpha);
+            }
+        }
+    }
+
+    /**
+     * Drawables may be shared with other views, so restore the alpha after drawing.
+     */
+    private static void drawWithAlpha(Canvas canvas, Drawable drawable, float alpha, int left, int top, int right, int bottom) {
+        int originalAlpha = Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT ? drawable.getAlpha() : 255;
+        drawable.setBounds(left, top, right, bottom);
+        drawable.setAlpha((int) (originalAlpha * alpha));
+        drawable.draw(canvas);
+        drawable.setAlpha(originalAlpha);
+    }
+}
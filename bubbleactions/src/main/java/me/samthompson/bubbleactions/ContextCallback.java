@@ -0,0 +1,9 @@
+package me.samthompson.bubbleactions;
+
+/**
+ * Like {@link Callback}, but told which view the BubbleActions were shown on. Used by the actions
+ * of an {@link ActionSet}, which are shared between views.
+ */
+public interface ContextCallback {
+    void doAction(ActionContext context);
+}
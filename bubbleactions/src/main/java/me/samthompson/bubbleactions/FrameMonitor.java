@@ -0,0 +1,75 @@
+package me.samthompson.bubbleactions;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.view.Choreographer;
+
+/**
+ * Counts the frames dropped while an animation runs by watching the gaps between Choreographer
+ * frames. The callback reposts itself, so monitoring does not allocate.
+ */
+@TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+final class FrameMonitor implements Choreographer.FrameCallback {
+
+    private final long frameIntervalNanos;
+    private boolean running;
+    private long firstFrameTimeNanos;
+    private long lastFrameTimeNanos;
+    private int droppedFrames;
+
+    /**
+     * @param refreshRate refresh rate of the display in frames per second
+     */
+    FrameMonitor(float refreshRate) {
+        frameIntervalNanos = (long) (1000000000L / (refreshRate > 0 ? refreshRate : 60f));
+    }
+
+    void start() {
+        if (running) {
+            return;
+        }
+
+        running = true;
+        firstFrameTimeNanos = 0;
+        lastFrameTimeNanos = 0;
+        droppedFrames = 0;
+        Choreographer.getInstance().postFrameCallback(this);
+    }
+
+    /**
+     * @return the number of dropped frames since {@link #start()}
+     */
+    int stop() {
+        if (running) {
+            running = false;
+            Choreographer.getInstance().removeFrameCallback(this);
+        }
+        return droppedFrames;
+    }
+
+    /**
+     * @return the System.nanoTime timestamp of the first frame since {@link #start()}, 0 if there
+     * has not been one yet
+     */
+    long getFirstFrameTimeNanos() {
+        return firstFrameTimeNanos;
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        if (!running) {
+            return;
+        }
+
+        if (lastFrameTimeNanos == 0) {
+            firstFrameTimeNanos = frameTimeNanos;
+        } else {
+            long frames = Math.round((double) (frameTimeNanos - lastFrameTimeNanos) / frameIntervalNanos);
+            if (frames > 1) {
+                droppedFrames += frames - 1;
+            }
+        }
+        lastFrameTimeNanos = frameTimeNanos;
+        Choreographer.getInstance().postFrameCallback(this);
+    }
+}
@@ -0,0 +1,140 @@
+package me.samthompson.bubbleactions;
+
+/**
+ * Timings of a single interaction with BubbleActions. All durations are in nanoseconds and are 0
+ * when the step did not happen. One instance is reused for every interaction of a BubbleActions
+ * instance, so reporting does not allocate.
+ */
+public final class InteractionMetrics {
+
+    long overlayAcquireNanos;
+    boolean prewarmed;
+    long setupNanos;
+    long dragStartNanos;
+    long firstFrameNanos;
+    long showAnimationNanos;
+    int droppedFrames;
+    long hoverToDropNanos;
+    long callbackNanos;
+    int actionIndex;
+    int predictions;
+    int mispredictions;
+
+    // timestamps, from System.nanoTime
+    long showTime;
+    long showAnimationStartTime;
+    long hoverTime;
+
+    InteractionMetrics() {
+        reset();
+    }
+
+    void reset() {
+        setupNanos = 0;
+        dragStartNanos = 0;
+        firstFrameNanos = 0;
+        showAnimationNanos = 0;
+        droppedFrames = -1;
+        hoverToDropNanos = 0;
+        callbackNanos = 0;
+        actionIndex = -1;
+        predictions = 0;
+        mispredictions = 0;
+        showTime = 0;
+        showAnimationStartTime = 0;
+        hoverTime = 0;
+    }
+
+    /**
+     * @return how long it took to get the overlay for the root view. This includes inflating the
+     * overlay the first time it is used on a root.
+     */
+    public long getOverlayAcquireNanos() {
+        return overlayAcquireNanos;
+    }
+
+    /**
+     * @return true if the overlay was prepared by
+     * {@link BubbleActions#prewarm(android.view.ViewGroup)} or
+     * {@link BubbleActions#prewarmInBackground(android.view.ViewGroup)} before its first use
+     */
+    public boolean isPrewarmed() {
+        return prewarmed;
+    }
+
+    /**
+     * @return how long it took to bind and position the bubbles
+     */
+    public long getSetupNanos() {
+        return setupNanos;
+    }
+
+    /**
+     * @return how long starting the framework drag took, 0 with
+     * {@link BubbleActions#INPUT_MODE_TOUCH}
+     */
+    public long getDragStartNanos() {
+        return dragStartNanos;
+    }
+
+    /**
+     * @return the time from calling {@code show()} to the first frame of the show animation
+     */
+    public long getFirstFrameNanos() {
+        return firstFrameNanos;
+    }
+
+    /**
+     * @return how long the show animation ran, 0 if it did not finish
+     */
+    public long getShowAnimationNanos() {
+        return showAnimationNanos;
+    }
+
+    /**
+     * @return the number of frames dropped during the show animation, or -1 if they could not be
+     * counted. Frames are counted with the Choreographer, which needs api 16.
+     */
+    public int getDroppedFrames() {
+        return droppedFrames;
+    }
+
+    /**
+     * @return the time from the finger entering the selected bubble to the drop, 0 if no action
+     * was selected
+     */
+    public long getHoverToDropNanos() {
+        return hoverToDropNanos;
+    }
+
+    /**
+     * @return how long the callback of the selected action took, 0 if no action was selected.
+     * With a callback executor, this is how long handing the callback to the executor took.
+     */
+    public long getCallbackNanos() {
+        return callbackNanos;
+    }
+
+    /**
+     * @return the index of the selected action in the order the actions were added, or -1 if the
+     * BubbleActions were dismissed without selecting an action
+     */
+    public int getActionIndex() {
+        return actionIndex;
+    }
+
+    /**
+     * @return how many bubbles were highlighted early by
+     * {@link BubbleActions#withPredictiveSelection(float)}
+     */
+    public int getPredictionCount() {
+        return predictions;
+    }
+
+    /**
+     * @return how many early highlights were undone because the finger did not reach the bubble
+     */
+    public int getMispredictionCount() {
+        return mispredictions;
+    }
+}
@@ -0,0 +1,21 @@
+package me.samthompson.bubbleactions;
+
+/**
+ * Supplies the actions of the items of a RecyclerView, see
+ * {@link RecyclerViewAttachment#attach(android.support.v7.widget.RecyclerView, ItemActionsProvider)}. The
+ * provider is only asked when an item is long pressed, so binding items costs nothing extra.
+ */
+public interface ItemActionsProvider {
+
+    /**
+     * Called on the main thread when an item is long pressed. Add the item's actions to the
+     * BubbleActions, usually with {@link BubbleActions#withActions(ActionSet)} so nothing is
+     * allocated per item. The position may change while the actions are shown; callbacks can read
+     * the current one from {@link ActionContext#getAdapterPosition()}.
+     *
+     * @param bubbleActions   the BubbleActions about to be shown on the item's view
+     * @param adapterPosition the adapter position of the item when it was long pressed
+     * @return true to show the actions, false if the item has none
+     */
+    boolean onCreateItemActions(BubbleActions bubbleActions, int adapterPosition);
+}
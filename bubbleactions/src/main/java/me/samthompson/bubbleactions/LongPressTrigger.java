@@ -0,0 +1,218 @@
+package me.samthompson.bubbleactions;
+
+import android.os.SystemClock;
+import android.view.HapticFeedbackConstants;
+import android.view.MotionEvent;
+import android.view.View;
+import android.view.ViewConfiguration;
+
+/**
+ * Shows BubbleActions when a view is held down, without an {@link View.OnLongClickListener}. The
+ * actions are created and the overlay is set up once most of the hold timeout has passed, while
+ * the finger is still held, so when the timeout is reached only the show animation is left to run.
+ * Taps and scrolls, which end well before that, cost nothing. If the touch turns into a tap or a
+ * scroll after the setup, it is undone without the overlay ever being added to the window. Created
+ * by {@link #attach(View, ViewActionsProvider)}.
+ * <p>
+ * The trigger is the touch listener of the view and records every event with the
+ * {@link TouchTracker}, so the touch point is always known. A touch listener the view already had
+ * keeps getting its events, and is put back by {@link #detach()}.
+ */
+public final class LongPressTrigger implements View.OnTouchListener {
+
+    private static final String TAG = LongPressTrigger.class.getSimpleName();
+
+    private final View view;
+    private final ViewActionsProvider provider;
+    private final int touchSlopSquare;
+    // the listener the view had before, if it could be read
+    private final View.OnTouchListener previousListener;
+    private int holdTimeout = ViewConfiguration.getLongPressTimeout();
+    private float downX;
+    private float downY;
+    // created and prepared while the finger is held
+    private BubbleActions pending;
+    // whether the rest of the gesture goes to a session of BubbleActions#INPUT_MODE_TOUCH
+    private boolean routingToSession = false;
+
+    private final Runnable createActions = new Runnable() {
+        @Override
+        public void run() {
+            createActions();
+        }
+    };
+
+    private final Runnable longPress = new Runnable() {
+        @Override
+        public void run() {
+            onLongPress();
+        }
+    };
+
+    private LongPressTrigger(View view, ViewActionsProvider provider) {
+        this.view = view;
+        this.provider = provider;
+        this.previousListener = TouchListenerReflection.getOnTouchListener(view);
+        int touchSlop = ViewConfiguration.get(view.getContext()).getScaledTouchSlop();
+        this.touchSlopSquare = touchSlop * touchSlop;
+    }
+
+    /**
+     * Show BubbleActions when a view is held down, without waiting for its long click. Once three
+     * quarters of the hold timeout have passed, the provider is asked for the actions and the
+     * overlay is set up while the finger is held, so the actions appear the moment the hold timeout
+     * is reached. If the touch turns into a tap or a scroll the setup is undone. The hold timeout
+     * can be changed with {@link #withHoldTimeout(int)}.
+     * <p>
+     * The trigger becomes the touch listener of the view. A {@link View.OnTouchListener} set on the
+     * view before is called for every event ahead of the trigger, except for the rest of a gesture
+     * that BubbleActions are shown during, and is put back on detach. On platforms where it can not
+     * be read, it is replaced. Must be called on the main thread.
+     *
+     * @param view     the view to show BubbleActions on
+     * @param provider supplies the actions of the view
+     * @return the trigger, which can be detached again
+     */
+    public static LongPressTrigger attach(View view, ViewActionsProvider provider) {
+        if (provider == null) {
+            throw new IllegalArgumentException(TAG + ": the provider must not be null.");
+        }
+
+        LongPressTrigger trigger = new LongPressTrigger(view, provider);
+        view.setOnTouchListener(trigger);
+        return trigger;
+    }
+
+    /**
+     * Set how long the view has to be held before the actions are shown. The default is the
+     * system long press timeout. A shorter timeout makes the actions appear sooner, but leaves
+     * less time to tell a hold from the start of a scroll.
+     *
+     * @param holdTimeout the hold timeout in milliseconds
+     * @return the LongPressTrigger instance that called this method
+     */
+    public LongPressTrigger withHoldTimeout(int holdTimeout) {
+        if (holdTimeout < 0) {
+            throw new IllegalArgumentException(TAG + ": the hold timeout must not be negative.");
+        }
+
+        this.holdTimeout = holdTimeout;
+        return this;
+    }
+
+    /**
+     * @return how long the view has to be held before the actions are shown, in milliseconds
+     */
+    public int getHoldTimeout() {
+        return holdTimeout;
+    }
+
+    /**
+     * Stop showing BubbleActions when the view is held down. This puts back the touch listener the
+     * view had before it was attached.
+     */
+    public void detach() {
+        cancel();
+        routingToSession = false;
+        view.setOnTouchListener(previousListener);
+    }
+
+    @Override
+    public boolean onTouch(View v, MotionEvent event) {
+        int actionMasked = event.getActionMasked();
+        if (routingToSession) {
+            if (actionMasked == MotionEvent.ACTION_UP || actionMasked == MotionEvent.ACTION_CANCEL) {
+                routingToSession = false;
+            }
+            return TouchTracker.getInstance().onTouch(v, event);
+        }
+
+        boolean handled = previousListener != null && previousListener.onTouch(v, event);
+        TouchTracker.record(event);
+        switch (actionMasked) {
+            case MotionEvent.ACTION_DOWN:
+                cancel();
+                downX = event.getX();
+                downY = event.getY();
+                // delayed, so taps and scrolls, which end well before the timeout, cost nothing
+                view.postDelayed(createActions, holdTimeout - holdTimeout / 4);
+                view.postDelayed(longPress, holdTimeout);
+                // a view that does not handle touches itself would not get the rest of the gesture
+                return handled || (!view.isClickable() && !view.isLongClickable());
+
+            case MotionEvent.ACTION_MOVE:
+                float dx = event.getX() - downX;
+                float dy = event.getY() - downY;
+                if (dx * dx + dy * dy > touchSlopSquare) {
+                    cancel();
+                }
+                break;
+
+            case MotionEvent.ACTION_POINTER_DOWN:
+            case MotionEvent.ACTION_UP:
+            case MotionEvent.ACTION_CANCEL:
+                // a parent that starts scrolling cancels the gesture on the view
+                cancel();
+                break;
+        }
+        return handled;
+    }
+
+    private void cancel() {
+        view.removeCallbacks(createActions);
+        view.removeCallbacks(longPress);
+        if (pending != null) {
+            pending.cancelPrepared();
+            pending = null;
+        }
+    }
+
+    private void createActions() {
+        view.removeCallbacks(createActions);
+        BubbleActions bubbleActions = BubbleActions.on(view);
+        if (!provider.onCreateViewActions(bubbleActions, view)) {
+            view.removeCallbacks(longPress);
+            return;
+        }
+
+        bubbleActions.prepare();
+        pending = bubbleActions;
+    }
+
+    private void onLongPress() {
+        if (pending == null) {
+            // the hold timeout ran out before the setup did
+            createActions();
+            if (pending == null) {
+                return;
+            }
+        }
+
+        BubbleActions bubbleActions = pending;
+        pending = null;
+        // the view's own long click must not fire as well
+        view.cancelLongPress();
+        view.performHapticFeedback(HapticFeedbackConstants.LONG_PRESS);
+        routingToSession = bubbleActions.inputMode == BubbleActions.INPUT_MODE_TOUCH;
+        if (routingToSession) {
+            cancelPreviousListener();
+        }
+        bubbleActions.touchesForwarded = true;
+        bubbleActions.show();
+    }
+
+    /**
+     * The previous listener does not see the rest of a gesture that BubbleActions are shown during,
+     * so end the gesture for it.
+     */
+    private void cancelPreviousListener() {
+        if (previousListener == null) {
+            return;
+        }
+
+        long now = SystemClock.uptimeMillis();
+        MotionEvent cancel = MotionEvent.obtain(now, now, MotionEvent.ACTION_CANCEL, downX, downY, 0);
+        previousListener.onTouch(view, cancel);
+        cancel.recycle();
+    }
+}
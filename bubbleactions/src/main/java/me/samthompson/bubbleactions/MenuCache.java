@@ -0,0 +1,128 @@
+package me.samthompson.bubbleactions;
+
+import android.content.Context;
+import android.content.res.Configuration;
+import android.content.res.Resources;
+import android.graphics.drawable.Drawable;
+import android.support.v7.widget.PopupMenu;
+import android.util.SparseArray;
+import android.view.Menu;
+import android.view.MenuInflater;
+import android.view.MenuItem;
+
+import java.lang.ref.WeakReference;
+import java.util.Locale;
+
+/**
+ * Caches the inflated and validated contents of menu resources used by
+ * {@link BubbleActions#fromMenu(int, MenuCallback)}, so the menu xml is only inflated and its
+ * titles and icons only resolved the first time it's used. The menu is inflated with the caller's
+ * context, so icons that refer to theme attributes work. Entries are keyed by menu resource id and
+ * are inflated again when the locale, density, night mode or theme changes. The theme is only
+ * weakly referenced, so an entry does not keep the activity it was inflated for alive. Must only
+ * be used from the main thread.
+ */
+final class MenuCache {
+
+    private static final SparseArray<Entry> entries = new SparseArray<>();
+
+    /**
+     * The inflated contents of a menu resource.
+     */
+    static final class Entry {
+        final CharSequence[] titles;
+        final Drawable[] icons;
+        final int[] ids;
+
+        private final Locale locale;
+        private final int densityDpi;
+        private final int nightMode;
+        private final WeakReference<Resources.Theme> theme;
+
+        private Entry(int size, Locale locale, int densityDpi, int nightMode, Resources.Theme theme) {
+            this.titles = new CharSequence[size];
+            this.icons = new Drawable[size];
+            this.ids = new int[size];
+            this.locale = locale;
+            this.densityDpi = densityDpi;
+            this.nightMode = nightMode;
+            this.theme = new WeakReference<>(theme);
+        }
+
+        int size() {
+            return ids.length;
+        }
+
+        private boolean matches(Locale locale, int densityDpi, int nightMode, Resources.Theme theme) {
+            return this.densityDpi == densityDpi && this.nightMode == nightMode && this.theme.get() == theme
+                    && (this.locale == null ? locale == null : this.locale.equals(locale));
+        }
+    }
+
+    private MenuCache() {
+    }
+
+    /**
+     * Get the contents of a menu resource, inflating it if it's not cached for the current
+     * configuration and theme.
+     *
+     * @param context context used to inflate the menu
+     * @param menuRes the menu resource id
+     * @return the inflated menu
+     * @throws IllegalArgumentException if the menu does not meet the requirements of
+     *                                  {@link BubbleActions#fromMenu(int, MenuCallback)}
+     */
+    static Entry get(Context context, int menuRes) {
+        Resources resources = context.getResources();
+        Configuration configuration = resources.getConfiguration();
+        Locale locale = getLocale(configuration);
+        int densityDpi = resources.getDisplayMetrics().densityDpi;
+        int nightMode = configuration.uiMode & Configuration.UI_MODE_NIGHT_MASK;
+        Resources.Theme theme = context.getTheme();
+
+        Entry entry = entries.get(menuRes);
+        if (entry == null || !entry.matches(locale, densityDpi, nightMode, theme)) {
+            entry = inflate(context, menuRes, locale, densityDpi, nightMode, theme);
+            entries.put(menuRes, entry);
+        }
+
+        return entry;
+    }
+
+    /**
+     * Drop all cached menus.
+     */
+    static void clear() {
+        entries.clear();
+    }
+
+    /**
+     * The deprecated field is still kept in sync with the first locale of the list on api 24+,
+     * which is the one the titles are resolved in.
+     */
+    @SuppressWarnings("deprecation")
+    private static Locale getLocale(Configuration configuration) {
+        return configuration.locale;
+    }
+
+    private static Entry inflate(Context context, int menuRes, Locale locale, int densityDpi, int nightMode, Resources.Theme theme) {
+        Menu menu = new PopupMenu(context, null).getMenu();
+        MenuInflater inflater = new MenuInflater(context);
+        inflater.inflate(menuRes, menu);
+
+        MenuValidator.validateSize(menu.size());
+
+        Entry entry = new Entry(menu.size(), locale, densityDpi, nightMode, theme);
+        for (int i = 0; i < menu.size(); i++) {
+            MenuItem item = menu.getItem(i);
+
+            MenuValidator.validateItem(item.hasSubMenu(), item.getIcon(), item.getTitle(), item.getItemId());
+
+            entry.titles[i] = item.getTitle();
+            entry.icons[i] = item.getIcon();
+            entry.ids[i] = item.getItemId();
+        }
+
+        return entry;
+    }
+}
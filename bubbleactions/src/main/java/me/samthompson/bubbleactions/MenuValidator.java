@@ -0,0 +1,39 @@
+package me.samthompson.bubbleactions;
+
+/**
+ * The requirements a menu resource has to meet to be used with
+ * {@link BubbleActions#fromMenu(int, MenuCallback)}. The checks only use plain java types, so they
+ * can be benchmarked on the jvm.
+ */
+final class MenuValidator {
+
+    private static final String TAG = MenuValidator.class.getSimpleName();
+
+    private MenuValidator() {
+    }
+
+    /**
+     * @param size the number of items in the menu
+     * @throws IllegalArgumentException if there are too many items to show
+     */
+    static void validateSize(int size) {
+        if (size > RadialLayout.MAX_ACTIONS) {
+            throw new IllegalArgumentException(TAG + ": menu resource cannot have more than "
+                    + RadialLayout.MAX_ACTIONS + " actions.");
+        }
+    }
+
+    /**
+     * @param hasSubMenu whether the item has a submenu
+     * @param icon       the icon of the item
+     * @param title      the title of the item
+     * @param itemId     the id of the item
+     * @throws IllegalArgumentException if the item cannot be shown as an action
+     */
+    static void validateItem(boolean hasSubMenu, Object icon, CharSequence title, int itemId) {
+        if (hasSubMenu || icon == null || title == null || itemId == 0) {
+            throw new IllegalArgumentException(TAG + ": menu resource cannot have a submenu and " +
+                    "must have an icon, title, and id.");
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package me.samthompson.bubbleactions;
+
+/**
+ * Notified with the timings of every interaction with BubbleActions, from {@code show()} until the
+ * overlay is removed. See {@link BubbleActions#withMetricsListener(MetricsListener)}.
+ */
+public interface MetricsListener {
+    /**
+     * Called on the main thread after the overlay is removed.
+     *
+     * @param metrics the timings of the interaction. The same instance is reused for every
+     *                interaction, so copy any values you want to keep.
+     */
+    void onInteractionMetrics(InteractionMetrics metrics);
+}
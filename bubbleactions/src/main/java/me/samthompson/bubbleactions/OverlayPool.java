@@ -0,0 +1,280 @@
+package me.samthompson.bubbleactions;
+
+import android.annotation.TargetApi;
+import android.app.Activity;
+import android.app.Application;
+import android.content.Context;
+import android.content.ContextWrapper;
+import android.os.Build;
+import android.os.Bundle;
+import android.support.v4.view.ViewCompat;
+import android.view.View;
+import android.view.ViewGroup;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.WeakHashMap;
+
+/**
+ * Keeps one ready-to-use {@link BubbleActionOverlay} per root window so that repeated calls to
+ * {@link BubbleActions#on(View)} rebind an existing overlay instead of inflating a new one.
+ * <p>
+ * Roots are weakly keyed, so a root that nothing else refers to, such as one that was never
+ * attached, is dropped with its overlay. That is not enough for a root in an activity's own window,
+ * which its overlay keeps reachable through the activity context it was built from. Roots are
+ * therefore also released when they are detached from their window (api 12+), and every root built
+ * from an activity's context is released when that activity is destroyed (api 14+), which covers
+ * dialogs and popups of the activity as well. Every BubbleActions instance shown in a root is
+ * released at the same time, so instances kept in fields or closures do not keep the destroyed
+ * window alive. Roots whose activity is already finishing are never pooled, since nothing would
+ * release them.
+ */
+final class OverlayPool {
+
+    private static final WeakHashMap<ViewGroup, BubbleActionOverlay> overlays = new WeakHashMap<>();
+
+    // instances are only weakly referenced, so the pool does not keep them alive
+    private static final WeakHashMap<ViewGroup, ArrayList<WeakReference<BubbleActions>>> instances = new WeakHashMap<>();
+
+    private static final View.OnAttachStateChangeListener releaseOnDetach = Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB_MR1 ? new ReleaseOnDetachListener() : null;
+
+    private static Application watchedApplication;
+
+    private OverlayPool() {
+    }
+
+    /**
+     * Get an overlay for the given root. If the pooled overlay for this root is currently on
+     * screen (e.g. still animating out), or the root can not be pooled, a new unpooled overlay is
+     * returned instead.
+     *
+     * @param root the root view the overlay will be added to
+     * @return an overlay that is not attached to any parent
+     */
+    static BubbleActionOverlay acquire(ViewGroup root) {
+        BubbleActionOverlay overlay = overlays.get(root);
+        if (overlay == null) {
+            overlay = new BubbleActionOverlay(root.getContext());
+            if (canPool(root)) {
+                overlays.put(root, overlay);
+                watch(root);
+            }
+        } else if (overlay.getParent() != null) {
+            overlay = new BubbleActionOverlay(root.getContext());
+        }
+
+        return overlay;
+    }
+
+    /**
+     * @param root the root view the overlay will be added to
+     * @return true if the root already has a pooled overlay
+     */
+    static boolean isPooled(ViewGroup root) {
+        return overlays.containsKey(root);
+    }
+
+    /**
+     * Create the pooled overlay for the given root ahead of its first use. Does nothing if the root
+     * already has one or can not be pooled.
+     *
+     * @param root the root view the overlay will be added to
+     */
+    static void prewarm(ViewGroup root) {
+        if (isPooled(root) || !canPool(root)) {
+            return;
+        }
+
+        BubbleActionOverlay overlay = new BubbleActionOverlay(root.getContext());
+        overlay.prewarm();
+        offer(root, overlay);
+    }
+
+    /**
+     * Pool an overlay that was built ahead of time, for example on a worker thread. The overlay is
+     * dropped if the root got one in the meantime because it was needed before this one was ready,
+     * or if the root can not be pooled any more.
+     *
+     * @param root    the root view the overlay will be added to
+     * @param overlay an overlay that is not attached to any parent
+     * @return true if the overlay was pooled
+     */
+    static boolean offer(ViewGroup root, BubbleActionOverlay overlay) {
+        if (isPooled(root) || !canPool(root)) {
+            return false;
+        }
+
+        overlays.put(root, overlay);
+        watch(root);
+        return true;
+    }
+
+    /**
+     * Drop the pooled overlay for the given root, if there is one.
+     *
+     * @param root the root view whose overlay should be released
+     */
+    static void release(ViewGroup root) {
+        overlays.remove(root);
+    }
+
+    /**
+     * Remember an instance shown in the given root, so it is released together with the root.
+     *
+     * @param root          the root view the instance is shown in
+     * @param bubbleActions the instance to release when the root goes away
+     */
+    static void register(ViewGroup root, BubbleActions bubbleActions) {
+        ArrayList<WeakReference<BubbleActions>> registered = instances.get(root);
+        if (registered == null) {
+            registered = new ArrayList<>();
+            instances.put(root, registered);
+            watch(root);
+        } else {
+            // drop instances that were already collected, so the list only grows with live ones
+            for (int i = registered.size() - 1; i >= 0; i--) {
+                if (registered.get(i).get() == null) {
+                    registered.remove(i);
+                }
+            }
+        }
+
+        registered.add(new WeakReference<>(bubbleActions));
+    }
+
+    /**
+     * Drop the pooled overlay for the given root and release every instance shown in it.
+     *
+     * @param root the root view that went away
+     */
+    static void releaseRoot(ViewGroup root) {
+        overlays.remove(root);
+        ArrayList<WeakReference<BubbleActions>> registered = instances.remove(root);
+        if (registered == null) {
+            return;
+        }
+
+        for (int i = 0; i < registered.size(); i++) {
+            BubbleActions bubbleActions = registered.get(i).get();
+            if (bubbleActions != null) {
+                bubbleActions.release();
+            }
+        }
+    }
+
+    /**
+     * A root that is not attached can only be pooled if the destroy of its activity will still
+     * release it. A root not built from an activity, such as a window's decor view on api 24+, is
+     * left to its weak key. Roots are usually not attached yet when they are prewarmed from
+     * onCreate, so attachment alone is not required.
+     *
+     * @param root the root view to pool an overlay for
+     * @return true if an overlay may be pooled for the root
+     */
+    static boolean canPool(ViewGroup root) {
+        if (ViewCompat.isAttachedToWindow(root)) {
+            return true;
+        }
+
+        Activity activity = findActivity(root.getContext());
+        return activity == null || (!activity.isFinishing() && !isDestroyed(activity));
+    }
+
+    private static Activity findActivity(Context context) {
+        while (context instanceof ContextWrapper) {
+            if (context instanceof Activity) {
+                return (Activity) context;
+            }
+            context = ((ContextWrapper) context).getBaseContext();
+        }
+
+        return null;
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR1)
+    private static boolean isDestroyed(Activity activity) {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1 && activity.isDestroyed();
+    }
+
+    private static void watch(ViewGroup root) {
+        if (releaseOnDetach != null) {
+            // the listener is a singleton, so make sure it is only registered once per root
+            root.removeOnAttachStateChangeListener(releaseOnDetach);
+            root.addOnAttachStateChangeListener(releaseOnDetach);
+        }
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.ICE_CREAM_SANDWICH) {
+            Context application = root.getContext().getApplicationContext();
+            if (application instanceof Application && application != watchedApplication) {
+                watchedApplication = (Application) application;
+                watchedApplication.registerActivityLifecycleCallbacks(new ReleaseOnDestroyCallbacks());
+            }
+        }
+    }
+
+    @TargetApi(Build.VERSION_CODES.HONEYCOMB_MR1)
+    private static class ReleaseOnDetachListener implements View.OnAttachStateChangeListener {
+
+        @Override
+        public void onViewAttachedToWindow(View v) {
+        }
+
+        @Override
+        public void onViewDetachedFromWindow(View v) {
+            v.removeOnAttachStateChangeListener(this);
+            releaseRoot((ViewGroup) v);
+        }
+    }
+
+    /**
+     * Covers roots that are never attached, or whose activity is destroyed while they stay
+     * attached, for example when it is finished before its window is shown or a dialog is left
+     * open.
+     */
+    @TargetApi(Build.VERSION_CODES.ICE_CREAM_SANDWICH)
+    private static class ReleaseOnDestroyCallbacks implements Application.ActivityLifecycleCallbacks {
+
+        @Override
+        public void onActivityDestroyed(Activity activity) {
+            // peek, so the decor view is not created just to be released
+            View decorView = activity.getWindow().peekDecorView();
+            if (decorView instanceof ViewGroup) {
+                releaseRoot((ViewGroup) decorView);
+            }
+
+            // copy the roots first, releasing them removes them from the maps
+            ArrayList<ViewGroup> roots = new ArrayList<>(overlays.keySet());
+            roots.addAll(instances.keySet());
+            for (int i = 0; i < roots.size(); i++) {
+                ViewGroup root = roots.get(i);
+                if (findActivity(root.getContext()) == activity) {
+                    releaseRoot(root);
+                }
+            }
+        }
+
+        @Override
+        public void onActivityCreated(Activity activity, Bundle savedInstanceState) {
+        }
+
+        @Override
+        public void onActivityStarted(Activity activity) {
+        }
+
+        @Override
+        public void onActivityResumed(Activity activity) {
+        }
+
+        @Override
+        public void onActivityPaused(Activity activity) {
+        }
+
+        @Override
+        public void onActivityStopped(Activity activity) {
+        }
+
+        @Override
+        public void onActivitySaveInstanceState(Activity activity, Bundle outState) {
+        }
+    }
+}
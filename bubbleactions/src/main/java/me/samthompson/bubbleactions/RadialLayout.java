@@ -0,0 +1,302 @@
+package me.samthompson.bubbleactions;
+
+/**
+ * Computes where the bubbles go around the touch point. All of the trigonometry that only
+ * depends on the number of actions is done once up front, so laying out the bubbles for a show
+ * is just a handful of multiplies and adds.
+ * <p>
+ * Up to {@link #INNER_RING_CAPACITY} actions are fanned out in a single arc. Larger numbers of
+ * actions are split between an inner and an outer ring, where the outer ring is one bubble
+ * further from the origin.
+ * <p>
+ * After {@link #layout} the results are available per bubble slot: a unit vector pointing from
+ * the origin, the ring the slot is on, and the index of the action bound to the slot. The overlay
+ * scales the unit vector by the ring's start and stop distances to get the animation endpoints.
+ * <p>
+ * The layout is also used to find the slot under a point with {@link #hitTest}. Every slot owns the
+ * sector of its ring that is closer to it than to its neighbours, so the hit targets are much
+ * larger than the bubbles themselves and the lookup does not depend on the number of actions.
+ * <p>
+ * RadialLayoutBenchmarks in the bubbleactions-benchmark module compares {@link #layout} with the
+ * trigonometry it replaced.
+ */
+final class RadialLayout {
+
+    /**
+     * There is not enough space on either side of the origin to fan out the actions.
+     */
+    static final int SIDE_NONE = 0;
+
+    /**
+     * There is space on both sides, so the actions are fanned out evenly above the origin.
+     */
+    static final int SIDE_BOTH = 1;
+
+    /**
+     * The origin is too close to the left edge, so the actions are fanned out to the right. Slots
+     * are filled in action order.
+     */
+    static final int SIDE_RIGHT = 2;
+
+    /**
+     * The origin is too close to the right edge, so the actions are fanned out to the left. Slots
+     * are filled in reverse action order to keep the labels on top of the bubbles.
+     */
+    static final int SIDE_LEFT = 3;
+
+    static final int INNER_RING_CAPACITY = 5;
+    static final int OUTER_RING_CAPACITY = 7;
+    static final int MAX_ACTIONS = INNER_RING_CAPACITY + OUTER_RING_CAPACITY;
+
+    private static final int MAX_RING_CAPACITY = Math.max(INNER_RING_CAPACITY, OUTER_RING_CAPACITY);
+
+    private final float[] ringStartDistance = new float[2];
+    private final float[] ringStopDistance = new float[2];
+    private final float[] ringRadius = new float[2];
+    private final float bubbleDimension;
+
+    // written by layout, read by hitTest
+    private int numRings;
+    private final int[] ringOffset = new int[2];
+    private final int[] ringCount = new int[2];
+    private final double[] ringFirstCos = new double[2];
+    private final double[] ringFirstSin = new double[2];
+    private final int[] ringDirection = new int[2];
+
+    // written by hitTest: 1 if the last point was in the middle of its slot's sector, 0 if it was
+    // on the border with a neighbouring slot
+    float lastHitCentering;
+
+    // indexed by number of actions in a ring
+    private final float[] cosDelta;
+    private final double[] angleDelta;
+    private final double[][] bothCos;
+    private final double[][] bothSin;
+    private final double[][] stepCos;
+    private final double[][] stepSin;
+
+    // indexed by total number of actions
+    private final int[] innerRingSize;
+
+    final float[] unitX = new float[MAX_ACTIONS];
+    final float[] unitY = new float[MAX_ACTIONS];
+    final int[] slotRing = new int[MAX_ACTIONS];
+    final int[] slotAction = new int[MAX_ACTIONS];
+
+    /**
+     * @param startDistance   distance from the origin to the center of a bubble when it starts
+     *                        animating in
+     * @param stopDistance    distance from the origin to the center of a fully shown bubble
+     * @param bubbleDimension size of a bubble, used to check if there's enough space on a side
+     *                        and to space the rings
+     */
+    RadialLayout(float startDistance, float stopDistance, float bubbleDimension) {
+        this.bubbleDimension = bubbleDimension;
+        ringStartDistance[0] = startDistance;
+        ringStopDistance[0] = stopDistance;
+        ringRadius[0] = stopDistance + bubbleDimension;
+
+        // the outer ring only keeps half a bubble of margin to the edge, otherwise a full outer
+        // ring would not fit on a phone in portrait
+        ringStartDistance[1] = startDistance + bubbleDimension;
+        ringStopDistance[1] = stopDistance + bubbleDimension;
+        ringRadius[1] = ringStopDistance[1] + bubbleDimension / 2;
+
+        cosDelta = new float[MAX_RING_CAPACITY + 1];
+        angleDelta = new double[MAX_RING_CAPACITY + 1];
+        bothCos = new double[MAX_RING_CAPACITY + 1][];
+        bothSin = new double[MAX_RING_CAPACITY + 1][];
+        stepCos = new double[MAX_RING_CAPACITY + 1][];
+        stepSin = new double[MAX_RING_CAPACITY + 1][];
+
+        for (int n = 1; n <= MAX_RING_CAPACITY; n++) {
+            double angleDelta = Math.PI / (n + 1);
+            cosDelta[n] = (float) Math.cos(angleDelta);
+            this.angleDelta[n] = angleDelta;
+
+            bothCos[n] = new double[n];
+            bothSin[n] = new double[n];
+            stepCos[n] = new double[n];
+            stepSin[n] = new double[n];
+            for (int k = 0; k < n; k++) {
+                double bothAngle = Math.PI + (k + 1) * angleDelta;
+                bothCos[n][k] = Math.cos(bothAngle);
+                bothSin[n][k] = Math.sin(bothAngle);
+                stepCos[n][k] = Math.cos(k * angleDelta);
+                stepSin[n][k] = Math.sin(k * angleDelta);
+            }
+        }
+
+        // split the actions between the rings roughly in proportion to their capacity
+        innerRingSize = new int[MAX_ACTIONS + 1];
+        for (int n = 0; n <= MAX_ACTIONS; n++) {
+            innerRingSize[n] = n <= INNER_RING_CAPACITY ? n
+                    : Math.max(n - OUTER_RING_CAPACITY, Math.round(n * (float) INNER_RING_CAPACITY / MAX_ACTIONS));
+        }
+    }
+
+    float getStartDistance(int ring) {
+        return ringStartDistance[ring];
+    }
+
+    float getStopDistance(int ring) {
+        return ringStopDistance[ring];
+    }
+
+    /**
+     * Lay out the actions around the origin inside of the given bounds. The results are written
+     * to {@link #unitX}, {@link #unitY}, {@link #slotRing} and {@link #slotAction}.
+     *
+     * @param originX    x coordinate of the touch point
+     * @param originY    y coordinate of the touch point
+     * @param left       left bound of the content
+     * @param top        top bound of the content
+     * @param right      right bound of the content
+     * @param bottom     bottom bound of the content
+     * @param numActions number of actions to lay out
+     * @return {@link #SIDE_NONE} if any ring doesn't fit, otherwise the side the inner ring was
+     * fanned out to
+     */
+    int layout(float originX, float originY, float left, float top, float right, float bottom, int numActions) {
+        numRings = 0;
+        if (numActions <= 0) {
+            return SIDE_BOTH;
+        }
+
+        if (numActions > MAX_ACTIONS) {
+            throw new IllegalArgumentException("Cannot lay out more than " + MAX_ACTIONS + " actions.");
+        }
+
+        int innerSize = innerRingSize[numActions];
+        int side = layoutRing(0, 0, innerSize, originX, originY, left, top, right, bottom);
+        if (side == SIDE_NONE) {
+            return SIDE_NONE;
+        }
+
+        numRings = 1;
+        if (numActions > innerSize) {
+            int outerSide = layoutRing(1, innerSize, numActions - innerSize, originX, originY, left, top, right, bottom);
+            if (outerSide == SIDE_NONE) {
+                numRings = 0;
+                return SIDE_NONE;
+            }
+            numRings = 2;
+        }
+
+        return side;
+    }
+
+    /**
+     * Find the slot whose sector contains a point. The point is relative to the center of the
+     * bubbles' arc, which is the origin passed to {@link #layout} plus however far the center of a
+     * bubble is from the center of its slot. The ring is picked by distance and the slot by
+     * rotating the point onto the first slot of the ring and dividing its angle by the step
+     * between slots.
+     *
+     * @param dx x offset of the point from the center of the arc
+     * @param dy y offset of the point from the center of the arc
+     * @return the slot containing the point, or -1 if the point is not close enough to any slot
+     */
+    int hitTest(float dx, float dy) {
+        if (numRings == 0) {
+            return -1;
+        }
+
+        float distance = (float) Math.sqrt(dx * dx + dy * dy);
+        if (distance < ringStopDistance[0] - bubbleDimension) {
+            return -1;
+        }
+
+        // the rings are one bubble apart, so they meet half a bubble out from the inner ring
+        int ring = numRings > 1 && distance >= ringStopDistance[0] + bubbleDimension / 2 ? 1 : 0;
+        if (distance > ringStopDistance[ring] + bubbleDimension) {
+            return -1;
+        }
+
+        double cos = ringFirstCos[ring];
+        double sin = ringFirstSin[ring];
+        double rotatedX = dx * cos + dy * sin;
+        double rotatedY = dy * cos - dx * sin;
+        double angle = Math.atan2(rotatedY, rotatedX) * ringDirection[ring];
+
+        double steps = angle / angleDelta[ringCount[ring]];
+        long step = Math.round(steps);
+        if (step < 0 || step >= ringCount[ring]) {
+            return -1;
+        }
+
+        lastHitCentering = 1f - 2f * (float) Math.abs(steps - step);
+        return ringOffset[ring] + (int) step;
+    }
+
+    private int layoutRing(int ring, int offset, int count, float originX, float originY,
+                           float left, float top, float right, float bottom) {
+        float radius = ringRadius[ring];
+
+        // same checks as RectF.contains
+        float space = cosDelta[count] * radius;
+        boolean verticalOk = left < right && top < bottom && originY >= top && originY < bottom;
+        boolean leftOk = verticalOk && originX - space >= left && originX - space < right;
+        boolean rightOk = verticalOk && originX + space >= left && originX + space < right;
+
+        if (!leftOk && !rightOk) {
+            return SIDE_NONE;
+        }
+
+        ringOffset[ring] = offset;
+        ringCount[ring] = count;
+        for (int i = 0; i < count; i++) {
+            slotRing[offset + i] = ring;
+            slotAction[offset + i] = offset + (rightOk ? i : count - 1 - i);
+        }
+
+        if (leftOk && rightOk) {
+            double[] cos = bothCos[count];
+            double[] sin = bothSin[count];
+            for (int i = 0; i < count; i++) {
+                unitX[offset + i] = (float) cos[i];
+                unitY[offset + i] = (float) sin[i];
+            }
+            ringFirstCos[ring] = cos[0];
+            ringFirstSin[ring] = sin[0];
+            ringDirection[ring] = 1;
+            return SIDE_BOTH;
+        }
+
+        // The first (or last) bubble is anchored at the angle where the bubble just touches the
+        // edge, i.e. -acos(x). Rather than evaluating acos and then cos/sin, use the identities
+        // cos(-acos(x)) = x and sin(-acos(x)) = -sqrt(1 - x^2), then rotate by the precomputed
+        // steps.
+        double[] cos = stepCos[count];
+        double[] sin = stepSin[count];
+        if (rightOk) {
+            double anchorCos = clamp((left - originX) / radius);
+            double anchorSin = -Math.sqrt(1 - anchorCos * anchorCos);
+            for (int i = 0; i < count; i++) {
+                unitX[offset + i] = (float) (anchorCos * cos[i] - anchorSin * sin[i]);
+                unitY[offset + i] = (float) (anchorSin * cos[i] + anchorCos * sin[i]);
+            }
+            ringFirstCos[ring] = anchorCos;
+            ringFirstSin[ring] = anchorSin;
+            ringDirection[ring] = 1;
+            return SIDE_RIGHT;
+        } else {
+            double anchorCos = clamp((right - originX) / radius);
+            double anchorSin = -Math.sqrt(1 - anchorCos * anchorCos);
+            // the angles end at the anchor and the slots are filled in reverse, so slot i is i
+            // steps before the anchor
+            for (int i = 0; i < count; i++) {
+                unitX[offset + i] = (float) (anchorCos * cos[i] + anchorSin * sin[i]);
+                unitY[offset + i] = (float) (anchorSin * cos[i] - anchorCos * sin[i]);
+            }
+            ringFirstCos[ring] = anchorCos;
+            ringFirstSin[ring] = anchorSin;
+            ringDirection[ring] = -1;
+            return SIDE_LEFT;
+        }
+    }
+
+    private static double clamp(double value) {
+        return value < -1 ? -1 : value > 1 ? 1 : value;
+    }
+}
@@ -0,0 +1,201 @@
+package me.samthompson.bubbleactions;
+
+import android.support.v7.widget.RecyclerView;
+import android.view.HapticFeedbackConstants;
+import android.view.MotionEvent;
+import android.view.View;
+import android.view.ViewConfiguration;
+
+/**
+ * Shows BubbleActions on long pressed items of a RecyclerView from a single
+ * {@link RecyclerView.OnItemTouchListener}, instead of a long click listener per item. Nothing is
+ * kept per item: the pressed item and its adapter position are looked up when the long press
+ * fires, and again by {@link ActionContext#getAdapterPosition()} when an action is dropped on.
+ * Items that are long clickable themselves keep their own long click. Created by
+ * {@link #attach(RecyclerView, ItemActionsProvider)}.
+ * <p>
+ * Touch events are also recorded by the {@link TouchTracker}, so the touch point is known without
+ * tracking every item.
+ * <p>
+ * Requires the recyclerview-v7 support library, which BubbleActions does not depend on. Only this
+ * class refers to it, so apps without RecyclerView never load it.
+ */
+public final class RecyclerViewAttachment implements RecyclerView.OnItemTouchListener {
+
+    private static final String TAG = RecyclerViewAttachment.class.getSimpleName();
+
+    private final RecyclerView recyclerView;
+    private final ItemActionsProvider provider;
+    private final int touchSlopSquare;
+    private View pressedChild;
+    private float downX;
+    private float downY;
+    // whether the rest of the gesture goes to a session of BubbleActions#INPUT_MODE_TOUCH
+    private boolean routingToSession = false;
+
+    private final ActionContext.PositionSource positionSource = new ActionContext.PositionSource() {
+        @Override
+        public int getAdapterPosition(View view) {
+            return RecyclerViewAttachment.this.getAdapterPosition(view);
+        }
+    };
+
+    private final Runnable longPress = new Runnable() {
+        @Override
+        public void run() {
+            onLongPress();
+        }
+    };
+
+    private RecyclerViewAttachment(RecyclerView recyclerView, ItemActionsProvider provider) {
+        this.recyclerView = recyclerView;
+        this.provider = provider;
+        int touchSlop = ViewConfiguration.get(recyclerView.getContext()).getScaledTouchSlop();
+        this.touchSlopSquare = touchSlop * touchSlop;
+    }
+
+    /**
+     * Show BubbleActions on long pressed items of a RecyclerView. A single
+     * {@link RecyclerView.OnItemTouchListener} detects long presses on every item, so items need no
+     * long click listener of their own and binding them allocates nothing. When an item is long
+     * pressed, the provider is asked for its actions with the item's current adapter position.
+     * Items that have a long click listener, or are otherwise long clickable, are left alone.
+     * <p>
+     * Must be called on the main thread.
+     *
+     * @param recyclerView the RecyclerView whose items get BubbleActions
+     * @param provider     supplies the actions of a long pressed item
+     * @return the attachment, which can be detached again
+     */
+    public static RecyclerViewAttachment attach(RecyclerView recyclerView, ItemActionsProvider provider) {
+        if (provider == null) {
+            throw new IllegalArgumentException(TAG + ": the provider must not be null.");
+        }
+
+        RecyclerViewAttachment attachment = new RecyclerViewAttachment(recyclerView, provider);
+        recyclerView.addOnItemTouchListener(attachment);
+        return attachment;
+    }
+
+    /**
+     * Stop showing BubbleActions on the items of the RecyclerView.
+     */
+    public void detach() {
+        recyclerView.removeCallbacks(longPress);
+        recyclerView.removeOnItemTouchListener(this);
+        pressedChild = null;
+        routingToSession = false;
+    }
+
+    /**
+     * @return the current adapter position of an item view, or {@link ActionContext#NO_POSITION}
+     * if it is no longer an item of the RecyclerView
+     */
+    int getAdapterPosition(View view) {
+        if (view.getParent() != recyclerView) {
+            return ActionContext.NO_POSITION;
+        }
+
+        return recyclerView.getChildAdapterPosition(view);
+    }
+
+    @Override
+    public boolean onInterceptTouchEvent(RecyclerView rv, MotionEvent e) {
+        TouchTracker.record(e);
+        int actionMasked = e.getActionMasked();
+        if (actionMasked == MotionEvent.ACTION_DOWN) {
+            routingToSession = false;
+            recyclerView.removeCallbacks(longPress);
+            pressedChild = recyclerView.findChildViewUnder(e.getX(), e.getY());
+            if (pressedChild != null && pressedChild.isLongClickable()) {
+                // the item handles its long click itself
+                pressedChild = null;
+            }
+            if (pressedChild != null) {
+                downX = e.getX();
+                downY = e.getY();
+                recyclerView.postDelayed(longPress, ViewConfiguration.getLongPressTimeout());
+            }
+            return false;
+        }
+
+        if (routingToSession) {
+            // the item did not take the gesture, so the rest of it comes through here
+            onTouchEvent(rv, e);
+            return true;
+        }
+
+        switch (actionMasked) {
+            case MotionEvent.ACTION_MOVE:
+                float dx = e.getX() - downX;
+                float dy = e.getY() - downY;
+                if (dx * dx + dy * dy > touchSlopSquare) {
+                    cancelLongPress();
+                }
+                break;
+            case MotionEvent.ACTION_POINTER_DOWN:
+            case MotionEvent.ACTION_UP:
+            case MotionEvent.ACTION_CANCEL:
+                cancelLongPress();
+                break;
+        }
+        return false;
+    }
+
+    @Override
+    public void onTouchEvent(RecyclerView rv, MotionEvent e) {
+        if (!routingToSession) {
+            return;
+        }
+
+        TouchTracker.getInstance().onTouch(pressedChild, e);
+        int actionMasked = e.getActionMasked();
+        if (actionMasked == MotionEvent.ACTION_UP || actionMasked == MotionEvent.ACTION_CANCEL) {
+            routingToSession = false;
+            pressedChild = null;
+        }
+    }
+
+    @Override
+    public void onRequestDisallowInterceptTouchEvent(boolean disallowIntercept) {
+        // a child wants the gesture, e.g. a nested scrolling view, unless it is a session that
+        // was just started from here
+        if (disallowIntercept && !routingToSession) {
+            cancelLongPress();
+        }
+    }
+
+    private void cancelLongPress() {
+        recyclerView.removeCallbacks(longPress);
+        pressedChild = null;
+    }
+
+    private void onLongPress() {
+        View child = pressedChild;
+        if (child == null) {
+            return;
+        }
+
+        int position = getAdapterPosition(child);
+        if (position == ActionContext.NO_POSITION) {
+            pressedChild = null;
+            return;
+        }
+
+        BubbleActions bubbleActions = BubbleActions.on(child);
+        bubbleActions.actionContext.positionSource = positionSource;
+        if (!provider.onCreateItemActions(bubbleActions, position)) {
+            pressedChild = null;
+            return;
+        }
+
+        child.performHapticFeedback(HapticFeedbackConstants.LONG_PRESS);
+        routingToSession = bubbleActions.inputMode == BubbleActions.INPUT_MODE_TOUCH;
+        if (!routingToSession) {
+            pressedChild = null;
+        }
+        // the rest of the gesture is forwarded from here, the item's touch listener stays as it is
+        bubbleActions.touchesForwarded = true;
+        bubbleActions.show();
+    }
+}
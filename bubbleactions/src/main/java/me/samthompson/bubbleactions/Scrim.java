@@ -0,0 +1,65 @@
+package me.samthompson.bubbleactions;
+
+/**
+ * The dimmed background behind the bubbles. The dim is a primitive fraction between the
+ * transparent and the darkened color, and the overlay fills itself with the resulting color
+ * before drawing its children. Unlike animating the background color property, nothing is looked
+ * up by reflection or boxed, and the overlay is only invalidated when the color actually changes.
+ */
+final class Scrim {
+
+    private final int transparentColor;
+    private final int darkenedColor;
+    private float fraction;
+    private int color;
+
+    Scrim(int transparentColor, int darkenedColor) {
+        this.transparentColor = transparentColor;
+        this.darkenedColor = darkenedColor;
+        this.color = transparentColor;
+    }
+
+    float getFraction() {
+        return fraction;
+    }
+
+    int getColor() {
+        return color;
+    }
+
+    /**
+     * @param fraction 0 for the transparent color, 1 for the darkened color
+     * @return true if the color changed and the scrim needs to be redrawn
+     */
+    boolean setFraction(float fraction) {
+        this.fraction = fraction;
+        int newColor = blendArgb(transparentColor, darkenedColor, fraction);
+        if (newColor == color) {
+            return false;
+        }
+
+        color = newColor;
+        return true;
+    }
+
+    /**
+     * Blend two argb colors channel by channel. This is the same math as the platform's
+     * ArgbEvaluator, without boxing the result.
+     */
+    static int blendArgb(int startColor, int endColor, float fraction) {
+        int startA = (startColor >> 24) & 0xff;
+        int startR = (startColor >> 16) & 0xff;
+        int startG = (startColor >> 8) & 0xff;
+        int startB = startColor & 0xff;
+
+        int endA = (endColor >> 24) & 0xff;
+        int endR = (endColor >> 16) & 0xff;
+        int endG = (endColor >> 8) & 0xff;
+        int endB = endColor & 0xff;
+
+        return ((startA + (int) (fraction * (endA - startA))) << 24) |
+                ((startR + (int) (fraction * (endR - startR))) << 16) |
+                ((startG + (int) (fraction * (endG - startG))) << 8) |
+                ((startB + (int) (fraction * (endB - startB))));
+    }
+}
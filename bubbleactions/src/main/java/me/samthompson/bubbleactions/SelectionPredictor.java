@@ -0,0 +1,166 @@
+package me.samthompson.bubbleactions;
+
+/**
+ * Predicts which bubble a fast moving finger is heading for, so its highlight can start before the
+ * finger gets there. The velocity of the finger is smoothed over the last few samples, the finger
+ * is projected along it onto the inner ring, and the slot at that point is the prediction.
+ * <p>
+ * Every prediction has a confidence between 0 and 1, the product of two factors:
+ * <ul>
+ * <li>how steady the direction is, the length of the smoothed velocity over the smoothed speed.
+ * A finger that curves or wobbles has a short average velocity compared to its speed.</li>
+ * <li>how close the projected point is to the middle of the slot's sector. Near the border with a
+ * neighbouring slot a small change in direction picks the other slot.</li>
+ * </ul>
+ * Points are relative to the center of the arc, like {@link RadialLayout#hitTest}.
+ */
+final class SelectionPredictor {
+
+    // slower fingers reach the bubble soon enough on their own
+    private static final float MIN_SPEED_DP_PER_SECOND = 300f;
+
+    // how far ahead to predict, about as long as the select animation of a bubble
+    private static final float HORIZON_MILLIS = BubbleView.ANIMATION_DURATION;
+
+    // samples further apart than this start a new estimate
+    private static final long MAX_SAMPLE_GAP_MILLIS = 100;
+
+    // weight of the newest sample in the smoothed velocity and speed
+    private static final float SMOOTHING = 0.5f;
+
+    private static final int MIN_SAMPLES = 3;
+
+    // a finger slowing down as it gets close to the predicted bubble still keeps the prediction
+    private static final float KEEP_SPEED_FRACTION = 0.25f;
+
+    private final float minSpeed;
+    private int samples = 0;
+    private float lastX;
+    private float lastY;
+    private long lastTime;
+    // in pixels per millisecond
+    private float velocityX;
+    private float velocityY;
+    private float speed;
+    private float confidence;
+
+    /**
+     * @param density the display density, to scale the minimum speed
+     */
+    SelectionPredictor(float density) {
+        minSpeed = MIN_SPEED_DP_PER_SECOND * density / 1000f;
+    }
+
+    void reset() {
+        samples = 0;
+        velocityX = 0f;
+        velocityY = 0f;
+        speed = 0f;
+        confidence = 0f;
+    }
+
+    /**
+     * Add the latest position of the finger.
+     *
+     * @param x    x offset from the center of the arc
+     * @param y    y offset from the center of the arc
+     * @param time time of the sample in milliseconds
+     */
+    void addSample(float x, float y, long time) {
+        long dt = time - lastTime;
+        if (samples > 0 && dt <= 0) {
+            // several events in the same millisecond, wait for time to pass
+            return;
+        }
+
+        if (samples == 0 || dt > MAX_SAMPLE_GAP_MILLIS) {
+            samples = 1;
+            velocityX = 0f;
+            velocityY = 0f;
+            speed = 0f;
+        } else {
+            float instantX = (x - lastX) / dt;
+            float instantY = (y - lastY) / dt;
+            float instantSpeed = (float) Math.sqrt(instantX * instantX + instantY * instantY);
+            if (samples == 1) {
+                velocityX = instantX;
+                velocityY = instantY;
+                speed = instantSpeed;
+            } else {
+                velocityX += (instantX - velocityX) * SMOOTHING;
+                velocityY += (instantY - velocityY) * SMOOTHING;
+                speed += (instantSpeed - speed) * SMOOTHING;
+            }
+            samples++;
+        }
+
+        lastX = x;
+        lastY = y;
+        lastTime = time;
+    }
+
+    /**
+     * Predict the slot the finger is heading for from its last sample.
+     *
+     * @param layout        the layout of the bubbles
+     * @param minConfidence the confidence a prediction needs
+     * @return the predicted slot, or -1 if there is no confident prediction
+     */
+    int predict(RadialLayout layout, float minConfidence) {
+        confidence = 0f;
+        if (samples < MIN_SAMPLES || speed < minSpeed) {
+            return -1;
+        }
+
+        // solve |last + velocity * t| = radius for the time the finger crosses the inner ring
+        float radius = layout.getStopDistance(0);
+        float a = velocityX * velocityX + velocityY * velocityY;
+        float b = 2f * (lastX * velocityX + lastY * velocityY);
+        float c = lastX * lastX + lastY * lastY - radius * radius;
+        if (c >= 0f || a == 0f) {
+            // already outside the ring, or not moving
+            return -1;
+        }
+
+        // c < 0, so there is exactly one positive root
+        float t = (-b + (float) Math.sqrt(b * b - 4f * a * c)) / (2f * a);
+        if (t > HORIZON_MILLIS) {
+            return -1;
+        }
+
+        int slot = layout.hitTest(lastX + velocityX * t, lastY + velocityY * t);
+        if (slot < 0) {
+            return -1;
+        }
+
+        float steadiness = Math.min(1f, (float) Math.sqrt(a) / speed);
+        confidence = steadiness * layout.lastHitCentering;
+        return confidence >= minConfidence ? slot : -1;
+    }
+
+    /**
+     * Whether the finger is still moving towards a slot, used to keep a prediction while the finger
+     * slows down before reaching the bubble.
+     *
+     * @param layout the layout of the bubbles
+     * @param slot   the slot predicted before
+     * @return true if the finger is moving towards the center of the slot's bubble
+     */
+    boolean isHeadingFor(RadialLayout layout, int slot) {
+        if (samples < MIN_SAMPLES || speed < minSpeed * KEEP_SPEED_FRACTION) {
+            return false;
+        }
+
+        float distance = layout.getStopDistance(layout.slotRing[slot]);
+        float toBubbleX = layout.unitX[slot] * distance - lastX;
+        float toBubbleY = layout.unitY[slot] * distance - lastY;
+        return velocityX * toBubbleX + velocityY * toBubbleY > 0f;
+    }
+
+    /**
+     * @return the confidence of the last prediction, 0 if none could be made
+     */
+    float getConfidence() {
+        return confidence;
+    }
+}
@@ -0,0 +1,150 @@
+package me.samthompson.bubbleactions;
+
+import android.content.res.Resources;
+import android.graphics.Paint;
+import android.graphics.Typeface;
+import android.text.TextPaint;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Measures the slots of the bubbles from the dimensions of bubble_actions_bubble_item, without
+ * laying out any views. A slot is a label centered above a bubble, where the label takes up space
+ * even when it is hidden, so the slot is as wide as the wider of the two.
+ * <p>
+ * Label widths are cached by label and typeface, so a label that is shown again, or shared through
+ * an {@link ActionSet}, is not measured again. The cache belongs to the measurer rather than the
+ * actions, which are shared and must not be written to. Labels are measured as plain text. Must
+ * only be used on the main thread.
+ */
+final class SlotMeasurer {
+
+    // same as the android:maxLength of the label in bubble_actions_bubble_item
+    static final int MAX_LABEL_LENGTH = 10;
+
+    // enough for every label of a few sets of actions, the least recently used are measured again
+    private static final int MAX_CACHED_LABELS = 4 * RadialLayout.MAX_ACTIONS;
+
+    private final TextPaint labelPaint = new TextPaint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint.FontMetricsInt labelFontMetrics = new Paint.FontMetricsInt();
+    // views size themselves in whole pixels, so the slots are measured the same way
+    final int bubbleDimension;
+    final int labelMargin;
+    final int labelPaddingHorizontal;
+    final int labelPaddingVertical;
+    private int labelHeight;
+
+    // access ordered, so the least recently used width is evicted first
+    final LinkedHashMap<LabelKey, Float> labelWidths = new LinkedHashMap<LabelKey, Float>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<LabelKey, Float> eldest) {
+            return size() > MAX_CACHED_LABELS;
+        }
+    };
+    // reused for lookups, so hits do not allocate
+    private final LabelKey lookupKey = new LabelKey();
+
+    SlotMeasurer(Resources resources) {
+        bubbleDimension = resources.getDimensionPixelSize(R.dimen.bubble_actions_bubble_dimension);
+        labelMargin = resources.getDimensionPixelSize(R.dimen.bubble_actions_label_margin);
+        labelPaddingHorizontal = resources.getDimensionPixelSize(R.dimen.bubble_actions_label_padding_horizontal);
+        labelPaddingVertical = resources.getDimensionPixelSize(R.dimen.bubble_actions_label_padding_vertical);
+        labelPaint.setTextSize(resources.getDimensionPixelSize(R.dimen.bubble_actions_label_text_size));
+        updateLabelHeight();
+    }
+
+    void setTypeface(Typeface typeface) {
+        if (labelPaint.getTypeface() != typeface) {
+            labelPaint.setTypeface(typeface);
+            updateLabelHeight();
+        }
+    }
+
+    private void updateLabelHeight() {
+        labelPaint.getFontMetricsInt(labelFontMetrics);
+        labelHeight = labelFontMetrics.bottom - labelFontMetrics.top + 2 * labelPaddingVertical;
+    }
+
+    /**
+     * @return the height of a label, including its padding
+     */
+    int getLabelHeight() {
+        return labelHeight;
+    }
+
+    /**
+     * @return how many characters of a label are shown
+     */
+    static int getLabelLength(CharSequence label) {
+        return label == null ? 0 : Math.min(label.length(), MAX_LABEL_LENGTH);
+    }
+
+    /**
+     * @return the width of an action's label, including its padding, or 0 if it has no label
+     */
+    float getLabelWidth(Action action) {
+        CharSequence label = action.actionName;
+        int length = getLabelLength(label);
+        if (length == 0) {
+            return 0;
+        }
+
+        Typeface typeface = labelPaint.getTypeface();
+        lookupKey.set(label, typeface);
+        Float width = labelWidths.get(lookupKey);
+        if (width == null) {
+            width = (float) Math.ceil(labelPaint.measureText(label, 0, length)) + 2 * labelPaddingHorizontal;
+            LabelKey key = new LabelKey();
+            key.set(label, typeface);
+            labelWidths.put(key, width);
+        }
+        return width;
+    }
+
+    /**
+     * @return the width of the slot of an action
+     */
+    float getSlotWidth(Action action) {
+        return Math.max(getLabelWidth(action), bubbleDimension);
+    }
+
+    /**
+     * @return the height of every slot
+     */
+    float getSlotHeight() {
+        return labelHeight + labelMargin + bubbleDimension;
+    }
+
+    /**
+     * @return how far the center of a bubble is below the center of its slot
+     */
+    float getBubbleOffsetY() {
+        return (labelHeight + labelMargin) / 2f;
+    }
+
+    static final class LabelKey {
+        private CharSequence label;
+        private Typeface typeface;
+
+        void set(CharSequence label, Typeface typeface) {
+            this.label = label;
+            this.typeface = typeface;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof LabelKey)) {
+                return false;
+            }
+
+            LabelKey other = (LabelKey) o;
+            return label.equals(other.label) && typeface == other.typeface;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * label.hashCode() + System.identityHashCode(typeface);
+        }
+    }
+}
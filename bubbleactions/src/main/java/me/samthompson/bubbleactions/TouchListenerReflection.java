@@ -0,0 +1,76 @@
+package me.samthompson.bubbleactions;
+
+import android.util.Log;
+import android.view.View;
+
+import java.lang.reflect.Field;
+
+/**
+ * Reads the touch listener a view already has, which View has no getter for, so it can be chained
+ * and put back instead of being replaced. The fields are looked up once per process; if the lookup
+ * fails (e.g. because of hidden api restrictions) it is not attempted again.
+ */
+final class TouchListenerReflection {
+
+    private static final String TAG = TouchListenerReflection.class.getSimpleName();
+
+    private static boolean resolved = false;
+    // null before api 14, where the listener is a field of the view itself
+    private static Field listenerInfo;
+    private static Field onTouchListener;
+
+    private TouchListenerReflection() {
+    }
+
+    /**
+     * @param view the view to read the listener of
+     * @return the touch listener of the view, or null if it has none or it could not be read
+     */
+    static View.OnTouchListener getOnTouchListener(View view) {
+        try {
+            if (!resolved) {
+                resolved = true;
+                resolve();
+            }
+
+            if (onTouchListener == null) {
+                return null;
+            }
+
+            Object holder = view;
+            if (listenerInfo != null) {
+                holder = listenerInfo.get(view);
+                if (holder == null) {
+                    // no listener of any kind was ever set
+                    return null;
+                }
+            }
+
+            return (View.OnTouchListener) onTouchListener.get(holder);
+        } catch (IllegalAccessException e) {
+            Log.w(TAG, "The touch listener of the view is not accessible", e);
+            onTouchListener = null;
+        }
+
+        return null;
+    }
+
+    private static void resolve() {
+        try {
+            try {
+                listenerInfo = View.class.getDeclaredField("mListenerInfo");
+                listenerInfo.setAccessible(true);
+                onTouchListener = listenerInfo.getType().getDeclaredField("mOnTouchListener");
+            } catch (NoSuchFieldException e) {
+                listenerInfo = null;
+                onTouchListener = View.class.getDeclaredField("mOnTouchListener");
+            }
+            onTouchListener.setAccessible(true);
+        } catch (NoSuchFieldException | RuntimeException e) {
+            // RuntimeException covers a SecurityException or a missing class in the field's type
+            Log.w(TAG, "The touch listener of a view is not available", e);
+            listenerInfo = null;
+            onTouchListener = null;
+        }
+    }
+}
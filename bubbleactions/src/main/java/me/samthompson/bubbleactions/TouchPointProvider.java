@@ -0,0 +1,20 @@
+package me.samthompson.bubbleactions;
+
+import android.graphics.Point;
+import android.view.View;
+
+/**
+ * Supplies the point that BubbleActions fan out from, which is normally where the user's finger
+ * is when the actions are shown. The default is {@link TouchTracker}.
+ */
+public interface TouchPointProvider {
+
+    /**
+     * Get the current touch point.
+     *
+     * @param root     the root view the BubbleActions overlay is shown in
+     * @param outPoint set to the touch point, relative to root
+     * @return true if outPoint was set, false if the touch point is unknown
+     */
+    boolean getTouchPoint(View root, Point outPoint);
+}
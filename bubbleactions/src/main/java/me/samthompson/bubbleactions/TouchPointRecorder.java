@@ -0,0 +1,95 @@
+package me.samthompson.bubbleactions;
+
+import android.content.Context;
+import android.graphics.Point;
+import android.os.Build;
+import android.view.MotionEvent;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.FrameLayout;
+
+/**
+ * An empty view on top of a root that remembers where the last touch went down in it. Down events
+ * are offered to the topmost children of a root first, so it sees every one of them, and since it
+ * never takes a gesture the views below get them as usual. This is how {@link TouchTracker} knows
+ * the touch point without a touch listener on the view or reflection.
+ * <p>
+ * It is only added to roots that are {@link FrameLayout}s, like the decor view of a window, where an
+ * extra child that fills the root does not change the layout.
+ */
+final class TouchPointRecorder extends View {
+
+    private boolean hasPoint = false;
+    private float x;
+    private float y;
+
+    private TouchPointRecorder(Context context) {
+        super(context);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            setImportantForAccessibility(IMPORTANT_FOR_ACCESSIBILITY_NO);
+        }
+    }
+
+    /**
+     * Add a recorder to a root, unless it has one or is not a FrameLayout. Must be called on the
+     * main thread.
+     *
+     * @param root the root view to record touches in
+     */
+    static void install(ViewGroup root) {
+        if (!(root instanceof FrameLayout) || find(root) != null) {
+            return;
+        }
+
+        root.addView(new TouchPointRecorder(root.getContext()),
+                new FrameLayout.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.MATCH_PARENT));
+    }
+
+    /**
+     * @param root the root view to look in
+     * @return the recorder of the root, or null if it has none
+     */
+    static TouchPointRecorder find(ViewGroup root) {
+        for (int i = root.getChildCount() - 1; i >= 0; i--) {
+            View child = root.getChildAt(i);
+            if (child instanceof TouchPointRecorder) {
+                return (TouchPointRecorder) child;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * @param outPoint set to where the last touch went down, relative to the root
+     * @return true if a touch went down since the recorder was added or last cleared
+     */
+    boolean getTouchPoint(Point outPoint) {
+        if (!hasPoint) {
+            return false;
+        }
+
+        outPoint.set((int) x, (int) y);
+        return true;
+    }
+
+    /**
+     * Forget the last touch, because the BubbleActions shown from it are gone.
+     */
+    void clear() {
+        hasPoint = false;
+    }
+
+    @Override
+    public boolean dispatchTouchEvent(MotionEvent event) {
+        if (event.getActionMasked() == MotionEvent.ACTION_DOWN) {
+            // the recorder fills the root from its origin, so these are root coordinates
+            hasPoint = true;
+            x = event.getX();
+            y = event.getY();
+        }
+
+        // never take the gesture, the views below get it as if the recorder was not there
+        return false;
+    }
+}
@@ -0,0 +1,199 @@
+package me.samthompson.bubbleactions;
+
+import android.graphics.Point;
+import android.os.SystemClock;
+import android.view.MotionEvent;
+import android.view.View;
+import android.view.ViewGroup;
+
+/**
+ * The default {@link TouchPointProvider}. BubbleActions add an empty view on top of every window
+ * root they are used in, which remembers where the last touch went down without taking the gesture
+ * or replacing any touch listener, so the touch point is found without reflection. The recorder is
+ * added when BubbleActions are first created for the attached root, or when the root is prewarmed,
+ * and only to roots that are FrameLayouts, such as the decor view of an activity.
+ * <p>
+ * The raw coordinates of a pointer that is down on a tracked view take precedence. Track a view
+ * with {@link #track(View)}, or forward events from your own touch listener with
+ * {@link #record(MotionEvent)}; that also covers the first long press in a root that was not
+ * prewarmed. Only if neither knows the touch point is it read from the hidden ViewRootImpl api.
+ * <p>
+ * The tracker also routes the rest of a gesture to BubbleActions shown with
+ * {@link BubbleActions#INPUT_MODE_TOUCH}, which is how the overlay follows the finger without the
+ * framework's drag and drop. The gesture is handed to the overlay, so no touch listener of the app
+ * is replaced for it.
+ */
+public final class TouchTracker implements TouchPointProvider, View.OnTouchListener {
+
+    /**
+     * Receives the rest of a gesture that BubbleActions have been shown during.
+     */
+    interface Session {
+        /**
+         * @param actionMasked the masked action of the event
+         * @param x            x coordinate of the event, relative to the root view
+         * @param y            y coordinate of the event, relative to the root view
+         */
+        void onSessionTouch(int actionMasked, float x, float y);
+    }
+
+    private static final TouchTracker INSTANCE = new TouchTracker();
+
+    private final int[] rootLocation = new int[2];
+    private final int[] sessionRootLocation = new int[2];
+    private Session session;
+    // set while the overlay takes over a gesture, so the cancel the old views get is not recorded
+    private boolean takingOver = false;
+    private boolean pointerDown = false;
+    private float lastRawX;
+    private float lastRawY;
+
+    private TouchTracker() {
+    }
+
+    /**
+     * @return the process wide touch tracker
+     */
+    public static TouchTracker getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Track touches on a view. This replaces any {@link View.OnTouchListener} set on the view; if
+     * you need your own listener, call {@link #record(MotionEvent)} from it instead.
+     *
+     * @param view the view to track, usually the view BubbleActions will be shown on
+     */
+    public static void track(View view) {
+        view.setOnTouchListener(INSTANCE);
+    }
+
+    /**
+     * Record a touch event. Must be called on the main thread.
+     *
+     * @param event the event delivered to a view
+     */
+    public static void record(MotionEvent event) {
+        INSTANCE.onEvent(event);
+    }
+
+    @Override
+    public boolean onTouch(View v, MotionEvent event) {
+        if (takingOver) {
+            return false;
+        }
+
+        onEvent(event);
+
+        Session current = session;
+        if (current == null) {
+            return false;
+        }
+
+        int actionMasked = event.getActionMasked();
+        if (actionMasked == MotionEvent.ACTION_UP || actionMasked == MotionEvent.ACTION_CANCEL) {
+            session = null;
+        }
+        current.onSessionTouch(actionMasked, event.getRawX() - sessionRootLocation[0], event.getRawY() - sessionRootLocation[1]);
+
+        // the view already performed its long click, it should not see the rest of the gesture
+        return true;
+    }
+
+    /**
+     * Route the rest of the ongoing gesture on a view to a session. If the caller does not forward
+     * the gesture to {@link #onTouch(View, MotionEvent)} itself, the overlay takes it over: a down
+     * event at the touch point is dispatched to the root, which cancels the gesture for the views
+     * it was going to and makes the overlay, the topmost child of the root, receive the rest of
+     * it. The overlay's touch listener then forwards it. Otherwise the view's parents are asked not
+     * to intercept, for example to start scrolling. Must not be called while the root is
+     * dispatching a touch event.
+     *
+     * @param view     the view the gesture is on
+     * @param root     the root view that coordinates are reported relative to
+     * @param session  the session to notify until the gesture ends
+     * @param x        x coordinate of the touch point, relative to the root view
+     * @param y        y coordinate of the touch point, relative to the root view
+     * @param takeOver whether the overlay has to take the gesture over from the view
+     */
+    void startSession(View view, ViewGroup root, Session session, float x, float y, boolean takeOver) {
+        this.session = session;
+        root.getLocationOnScreen(sessionRootLocation);
+        if (takeOver) {
+            takeOver(root, x, y);
+            return;
+        }
+
+        view.setPressed(false);
+        if (view.getParent() != null) {
+            view.getParent().requestDisallowInterceptTouchEvent(true);
+        }
+    }
+
+    /**
+     * @return true while the overlay is taking over a gesture, see
+     * {@link #startSession(View, ViewGroup, Session, float, float, boolean)}
+     */
+    boolean isTakingOver() {
+        return takingOver;
+    }
+
+    private void takeOver(ViewGroup root, float x, float y) {
+        long now = SystemClock.uptimeMillis();
+        MotionEvent down = MotionEvent.obtain(now, now, MotionEvent.ACTION_DOWN, x, y, 0);
+        takingOver = true;
+        try {
+            root.dispatchTouchEvent(down);
+        } finally {
+            takingOver = false;
+            down.recycle();
+        }
+    }
+
+    /**
+     * Stop routing events to a session, if it is still the active one. The gesture it was
+     * following is forgotten as well: a session ended this way, for example because the window went
+     * away, may never see the up or cancel event, and a later show must not use its coordinates.
+     */
+    void endSession(Session session) {
+        if (this.session == session) {
+            this.session = null;
+            pointerDown = false;
+        }
+    }
+
+    @Override
+    public boolean getTouchPoint(View root, Point outPoint) {
+        if (pointerDown) {
+            root.getLocationOnScreen(rootLocation);
+            outPoint.set((int) (lastRawX - rootLocation[0]), (int) (lastRawY - rootLocation[1]));
+            return true;
+        }
+
+        TouchPointRecorder recorder = root instanceof ViewGroup ? TouchPointRecorder.find((ViewGroup) root) : null;
+        if (recorder != null && recorder.getTouchPoint(outPoint)) {
+            return true;
+        }
+
+        return ViewRootReflection.getLastTouchPoint(root, outPoint);
+    }
+
+    private void onEvent(MotionEvent event) {
+        if (takingOver) {
+            return;
+        }
+
+        switch (event.getActionMasked()) {
+            case MotionEvent.ACTION_DOWN:
+            case MotionEvent.ACTION_MOVE:
+                pointerDown = true;
+                lastRawX = event.getRawX();
+                lastRawY = event.getRawY();
+                break;
+            case MotionEvent.ACTION_UP:
+            case MotionEvent.ACTION_CANCEL:
+                pointerDown = false;
+                break;
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package me.samthompson.bubbleactions;
+
+import android.view.View;
+
+/**
+ * Supplies the actions of a view that BubbleActions are shown on by a {@link LongPressTrigger},
+ * see {@link LongPressTrigger#attach(View, ViewActionsProvider)}.
+ */
+public interface ViewActionsProvider {
+
+    /**
+     * Called on the main thread right after the finger goes down on the view, so the overlay can be
+     * set up while the finger is held. The actions are only shown if the finger is still held when
+     * the hold timeout is reached, so this is also called for taps and scrolls.
+     *
+     * @param bubbleActions the BubbleActions that may be shown on the view
+     * @param view          the view the finger went down on
+     * @return true to show the actions, false if the view has none right now
+     */
+    boolean onCreateViewActions(BubbleActions bubbleActions, View view);
+}
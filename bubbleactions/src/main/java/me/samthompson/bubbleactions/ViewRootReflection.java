@@ -0,0 +1,67 @@
+package me.samthompson.bubbleactions;
+
+import android.graphics.Point;
+import android.util.Log;
+import android.view.View;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+/**
+ * Reads the last touch point from the hidden ViewRootImpl api. The method handles are looked up
+ * once per process; if the lookup fails (e.g. because of hidden api restrictions) it is not
+ * attempted again.
+ */
+final class ViewRootReflection {
+
+    private static final String TAG = ViewRootReflection.class.getSimpleName();
+
+    private static boolean resolved = false;
+    private static Method getViewRootImpl;
+    private static Method getLastTouchPoint;
+
+    private ViewRootReflection() {
+    }
+
+    /**
+     * Get the last touch point of the window that the view is attached to.
+     *
+     * @param view     a view attached to the window
+     * @param outPoint set to the last touch point in window coordinates
+     * @return true if the touch point could be read
+     */
+    static boolean getLastTouchPoint(View view, Point outPoint) {
+        try {
+            if (!resolved) {
+                resolved = true;
+                getViewRootImpl = View.class.getMethod("getViewRootImpl");
+            }
+
+            if (getViewRootImpl == null) {
+                return false;
+            }
+
+            Object viewRootImpl = getViewRootImpl.invoke(view);
+            if (viewRootImpl == null) {
+                return false;
+            }
+
+            if (getLastTouchPoint == null) {
+                getLastTouchPoint = viewRootImpl.getClass().getMethod("getLastTouchPoint", Point.class);
+            }
+
+            getLastTouchPoint.invoke(viewRootImpl, outPoint);
+            return true;
+        } catch (NoSuchMethodException e) {
+            Log.w(TAG, "ViewRootImpl touch point is not available", e);
+            getViewRootImpl = null;
+        } catch (IllegalAccessException e) {
+            Log.w(TAG, "ViewRootImpl touch point is not accessible", e);
+            getViewRootImpl = null;
+        } catch (InvocationTargetException e) {
+            Log.w(TAG, "Unable to read the ViewRootImpl touch point", e);
+        }
+
+        return false;
+    }
+}
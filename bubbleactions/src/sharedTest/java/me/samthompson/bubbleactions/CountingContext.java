@@ -0,0 +1,55 @@
+package me.samthompson.bubbleactions;
+
+import android.content.Context;
+import android.content.ContextWrapper;
+import android.util.AttributeSet;
+import android.view.LayoutInflater;
+import android.view.View;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+/**
+ * Counts every view created by a LayoutInflater obtained from this context, and the overlays that
+ * were constructed with it.
+ */
+class CountingContext extends ContextWrapper {
+
+    int inflations = 0;
+    int overlays = 0;
+    // every overlay inflates its indicator into itself while it is constructed
+    private final Set<View> inflatedInto = Collections.newSetFromMap(new IdentityHashMap<View, Boolean>());
+    private LayoutInflater inflater;
+
+    CountingContext(Context base) {
+        super(base);
+    }
+
+    @Override
+    public Object getSystemService(String name) {
+        if (LAYOUT_INFLATER_SERVICE.equals(name)) {
+            if (inflater == null) {
+                inflater = LayoutInflater.from(getBaseContext()).cloneInContext(this);
+                inflater.setFactory2(new LayoutInflater.Factory2() {
+                    @Override
+                    public View onCreateView(View parent, String name, Context context, AttributeSet attrs) {
+                        inflations++;
+                        if (parent instanceof BubbleActionOverlay && inflatedInto.add(parent)) {
+                            overlays++;
+                        }
+                        return null;
+                    }
+
+                    @Override
+                    public View onCreateView(String name, Context context, AttributeSet attrs) {
+                        inflations++;
+                        return null;
+                    }
+                });
+            }
+            return inflater;
+        }
+        return super.getSystemService(name);
+    }
+}
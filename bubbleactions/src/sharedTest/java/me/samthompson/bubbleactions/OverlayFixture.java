@@ -0,0 +1,147 @@
+package me.samthompson.bubbleactions;
+
+import android.app.Activity;
+import android.content.Context;
+import android.view.View;
+import android.widget.FrameLayout;
+
+/**
+ * A root with a target view and the root's pooled overlay, for tests that drive the overlay
+ * directly instead of through a long press. The overlay is laid out at a fixed size, so no window
+ * or layout pass is needed.
+ */
+class OverlayFixture {
+
+    static final int WIDTH = 1080;
+    static final int HEIGHT = 1920;
+    static final float ORIGIN_X = WIDTH / 2;
+    static final float ORIGIN_Y = HEIGHT / 2;
+
+    final FrameLayout root;
+    final View target;
+    final BubbleActions bubbleActions;
+    final BubbleActionOverlay overlay;
+
+    private OverlayFixture(Context context, Activity activity) {
+        root = new FrameLayout(context);
+        target = new View(context);
+        root.addView(target);
+        if (activity != null) {
+            activity.setContentView(root);
+        }
+
+        bubbleActions = BubbleActions.on(target);
+        overlay = OverlayPool.acquire(root);
+        root.addView(overlay);
+    }
+
+    /**
+     * @param context the context of the views
+     * @return a fixture whose root has no parent, so it is the root view BubbleActions are shown
+     * in
+     */
+    static OverlayFixture detached(Context context) {
+        return new OverlayFixture(context, null);
+    }
+
+    /**
+     * @param activity the activity to set the root as the content view of
+     * @return a fixture whose root is in the activity's window, so runnables posted to the overlay
+     * run with the main looper
+     */
+    static OverlayFixture inActivity(Activity activity) {
+        return new OverlayFixture(activity, activity);
+    }
+
+    /**
+     * Add three actions, create their bubble views and lay the overlay out.
+     *
+     * @param callback the callback of every action
+     * @return this fixture
+     */
+    OverlayFixture withActions(Callback callback) {
+        bubbleActions.addAction("Star", android.R.drawable.star_on, callback)
+                .addAction("Share", android.R.drawable.ic_menu_share, callback)
+                .addAction("Hide", android.R.drawable.ic_delete, callback);
+        overlay.ensureBubbleViews(bubbleActions.numActions);
+        layout();
+        return this;
+    }
+
+    void layout() {
+        overlay.measure(View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(HEIGHT, View.MeasureSpec.EXACTLY));
+        overlay.layout(0, 0, WIDTH, HEIGHT);
+    }
+
+    /**
+     * Bind the actions and position the bubbles around the middle of the overlay.
+     */
+    void setup() {
+        overlay.setupOverlay(ORIGIN_X, ORIGIN_Y, bubbleActions);
+    }
+
+    /**
+     * Run the show animation to its end.
+     */
+    void animateShow() {
+        overlay.animateShow();
+        overlay.showAnimator.end();
+    }
+
+    /**
+     * Run the hide animation to its end.
+     */
+    void animateHide() {
+        overlay.animateHide();
+        overlay.showAnimator.end();
+    }
+
+    /**
+     * {@link #setup()}, then {@link #animateShow()}.
+     */
+    void show() {
+        setup();
+        animateShow();
+    }
+
+    BubbleView bubbleView(int slot) {
+        return (BubbleView) overlay.getChildAt(slot + 1);
+    }
+
+    /**
+     * Move the finger to the center of a bubble.
+     */
+    void hover(int slot) {
+        overlay.onDragLocation(bubbleCenterX(overlay, slot), bubbleCenterY(overlay, slot));
+    }
+
+    /**
+     * Move the finger to the center of a bubble, finish its select animation and lift the finger.
+     *
+     * @return true if an action was dropped on
+     */
+    boolean drop(int slot) {
+        hover(slot);
+        bubbleView(slot).selectAnimator.end();
+        return overlay.dropOnHoveredSlot();
+    }
+
+    /**
+     * @return the x coordinate of the center of a bubble, relative to the overlay
+     */
+    static float bubbleCenterX(BubbleActionOverlay overlay, int slot) {
+        BubbleView bubbleView = (BubbleView) overlay.getChildAt(slot + 1);
+        View imageView = bubbleView.imageView;
+        return bubbleView.getTranslationX() + imageView.getLeft() + imageView.getWidth() / 2f;
+    }
+
+    /**
+     * @return the y coordinate of the center of a bubble, relative to the overlay
+     */
+    static float bubbleCenterY(BubbleActionOverlay overlay, int slot) {
+        BubbleView bubbleView = (BubbleView) overlay.getChildAt(slot + 1);
+        View imageView = bubbleView.imageView;
+        return bubbleView.getTranslationY() + imageView.getTop() + imageView.getHeight() / 2f;
+    }
+}
@@ -0,0 +1,158 @@
+package me.samthompson.bubbleactions;
+
+import android.app.Activity;
+import android.graphics.drawable.ColorDrawable;
+import android.graphics.drawable.Drawable;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that lazy actions are shown with a placeholder and that their content is swapped in
+ * whenever it arrives while the actions are shown.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 23)
+public class ActionProviderTest {
+
+    private OverlayFixture fixture;
+    private BubbleActionOverlay overlay;
+    private BubbleActions bubbleActions;
+    private ActionContent content;
+    private final Drawable icon = new ColorDrawable(0xff0000ff);
+
+    private final Callback callback = new Callback() {
+        @Override
+        public void doAction() {
+        }
+    };
+
+    private final ActionProvider provider = new ActionProvider() {
+        @Override
+        public void provideAction(ActionContent content) {
+            ActionProviderTest.this.content = content;
+        }
+    };
+
+    @Before
+    public void setUp() {
+        Robolectric.getForegroundThreadScheduler().pause();
+
+        fixture = OverlayFixture.detached(Robolectric.setupActivity(Activity.class));
+        overlay = fixture.overlay;
+        bubbleActions = fixture.bubbleActions
+                .addAction("Star", android.R.drawable.star_on, callback)
+                .addLazyAction("...", provider, callback);
+        overlay.ensureBubbleViews(bubbleActions.numActions);
+        fixture.layout();
+    }
+
+    @After
+    public void tearDown() {
+        OverlayPool.release(fixture.root);
+    }
+
+    @Test
+    public void testPlaceholderIsShownUntilContentArrives() {
+        show();
+        BubbleView bubbleView = lazyBubbleView();
+        Drawable placeholder = bubbleView.imageView.getDrawable();
+        assertNotNull(placeholder);
+        assertNotSame(icon, placeholder);
+        assertEquals("...", bubbleView.textView.getText().toString());
+
+        content.setDrawable(icon);
+        content.setLabel("Avatar");
+        assertSame(icon, bubbleView.imageView.getDrawable());
+        assertEquals("Avatar", bubbleView.textView.getText().toString());
+    }
+
+    @Test
+    public void testContentSetRightAwayIsBoundWithoutPlaceholder() {
+        bubbleActions.addLazyAction("...", new ActionProvider() {
+            @Override
+            public void provideAction(ActionContent content) {
+                content.setDrawable(icon);
+            }
+        }, callback);
+        overlay.ensureBubbleViews(bubbleActions.numActions);
+        fixture.layout();
+
+        show();
+        boolean found = false;
+        for (int i = 0; i < bubbleActions.numActions; i++) {
+            found |= fixture.bubbleView(i).imageView.getDrawable() == icon;
+        }
+        assertTrue(found);
+    }
+
+    @Test
+    public void testContentFromWorkerIsAppliedOnMainThread() throws InterruptedException {
+        show();
+        Thread worker = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                content.setDrawable(icon);
+            }
+        });
+        worker.start();
+        worker.join();
+        assertNotSame(icon, lazyBubbleView().imageView.getDrawable());
+
+        ShadowLooper.idleMainLooper();
+        assertSame(icon, lazyBubbleView().imageView.getDrawable());
+    }
+
+    @Test
+    public void testLongerLabelKeepsBubbleCentered() {
+        show();
+        BubbleView bubbleView = lazyBubbleView();
+        float centerX = bubbleView.getTranslationX() + bubbleView.getWidth() / 2f;
+
+        content.setLabel("Much longer");
+        fixture.layout();
+        assertEquals(centerX, bubbleView.getTranslationX() + bubbleView.getWidth() / 2f, 0.5f);
+    }
+
+    @Test
+    public void testContentAfterHidingIsDropped() {
+        show();
+        Drawable placeholder = lazyBubbleView().imageView.getDrawable();
+        ActionContent shownContent = content;
+        assertFalse(shownContent.isCancelled());
+
+        bubbleActions.removeOverlay();
+        assertTrue(shownContent.isCancelled());
+
+        shownContent.setDrawable(icon);
+        assertSame(placeholder, bubbleActions.actions[1].bubble);
+    }
+
+    private void show() {
+        bubbleActions.provideActions();
+        fixture.show();
+    }
+
+    private BubbleView lazyBubbleView() {
+        for (int i = 0; i < bubbleActions.numActions; i++) {
+            BubbleView bubbleView = fixture.bubbleView(i);
+            if (bubbleView.imageView.getDrawable() != bubbleActions.actions[0].bubble) {
+                return bubbleView;
+            }
+        }
+        throw new AssertionError("the lazy action is not shown");
+    }
+}
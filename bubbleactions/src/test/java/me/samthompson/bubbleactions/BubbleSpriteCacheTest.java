@@ -0,0 +1,149 @@
+package me.samthompson.bubbleactions;
+
+import android.graphics.Bitmap;
+import android.graphics.drawable.BitmapDrawable;
+import android.graphics.drawable.ColorDrawable;
+import android.graphics.drawable.Drawable;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 23)
+public class BubbleSpriteCacheTest {
+
+    private static final int SIZE = 48;
+    private static final int DENSITY = 480;
+    private static final int SPRITE_BYTES = SIZE * SIZE * 4;
+    // sprites are only keyed by resource id, so any drawable can stand in for these resources
+    private static final int FIRST_RES = 0x7f0a0001;
+    private static final int SECOND_RES = 0x7f0a0002;
+    private static final int THIRD_RES = 0x7f0a0003;
+
+    private final BubbleSpriteCache cache = BubbleSpriteCache.getInstance();
+
+    private final Callback callback = new Callback() {
+        @Override
+        public void doAction() {
+        }
+    };
+
+    @Before
+    public void setUp() {
+        cache.clear();
+        cache.setMaxBytes(BubbleSpriteCache.DEFAULT_MAX_BYTES);
+    }
+
+    @After
+    public void tearDown() {
+        cache.clear();
+        cache.setMaxBytes(BubbleSpriteCache.DEFAULT_MAX_BYTES);
+    }
+
+    @Test
+    public void testDrawablesOfOneResourceShareSprite() {
+        Drawable bubble = new ColorDrawable(0xff0000ff);
+        Bitmap sprite = cache.get(FIRST_RES, bubble, false, SIZE, DENSITY);
+        assertNotNull(sprite);
+        assertEquals(SIZE, sprite.getWidth());
+
+        // a mutated copy has a constant state of its own, but was loaded from the same resource
+        Drawable sameResource = bubble.getConstantState().newDrawable().mutate();
+        assertSame(sprite, cache.get(FIRST_RES, sameResource, false, SIZE, DENSITY));
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+        assertEquals(SPRITE_BYTES, cache.getSizeBytes());
+    }
+
+    @Test
+    public void testStateSizeAndDensityHaveTheirOwnSprites() {
+        Drawable bubble = new ColorDrawable(0xff0000ff);
+        Bitmap sprite = cache.get(FIRST_RES, bubble, false, SIZE, DENSITY);
+        assertNotSame(sprite, cache.get(FIRST_RES, bubble, true, SIZE, DENSITY));
+        assertNotSame(sprite, cache.get(FIRST_RES, bubble, false, SIZE * 2, DENSITY));
+        assertNotSame(sprite, cache.get(FIRST_RES, bubble, false, SIZE, DENSITY / 2));
+        assertEquals(0, cache.getHitCount());
+        assertEquals(4, cache.getMissCount());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedSpriteIsEvicted() {
+        cache.setMaxBytes(2 * SPRITE_BYTES);
+        Drawable first = new ColorDrawable(0xff0000ff);
+        Drawable second = new ColorDrawable(0xff00ff00);
+        Drawable third = new ColorDrawable(0xffff0000);
+        cache.get(FIRST_RES, first, false, SIZE, DENSITY);
+        cache.get(SECOND_RES, second, false, SIZE, DENSITY);
+        cache.get(FIRST_RES, first, false, SIZE, DENSITY);
+        cache.get(THIRD_RES, third, false, SIZE, DENSITY);
+        assertEquals(2 * SPRITE_BYTES, cache.getSizeBytes());
+
+        int misses = cache.getMissCount();
+        cache.get(FIRST_RES, first, false, SIZE, DENSITY);
+        assertEquals(misses, cache.getMissCount());
+        cache.get(SECOND_RES, second, false, SIZE, DENSITY);
+        assertEquals(misses + 1, cache.getMissCount());
+    }
+
+    @Test
+    public void testShrinkingBudgetEvicts() {
+        cache.get(FIRST_RES, new ColorDrawable(0xff0000ff), false, SIZE, DENSITY);
+        cache.get(SECOND_RES, new ColorDrawable(0xff00ff00), false, SIZE, DENSITY);
+        cache.setMaxBytes(SPRITE_BYTES);
+        assertEquals(SPRITE_BYTES, cache.getSizeBytes());
+    }
+
+    @Test
+    public void testZeroBudgetTurnsCacheOff() {
+        cache.setMaxBytes(0);
+        assertNull(cache.get(FIRST_RES, new ColorDrawable(0xff0000ff), false, SIZE, DENSITY));
+        assertEquals(0, cache.getSizeBytes());
+    }
+
+    @Test
+    public void testDrawablesWithoutResourceAreNotCached() {
+        assertNull(cache.get(0, new ColorDrawable(0xff0000ff), false, SIZE, DENSITY));
+        assertEquals(0, cache.getSizeBytes());
+    }
+
+    @Test
+    public void testBitmapsAreNotCached() {
+        Bitmap bitmap = Bitmap.createBitmap(SIZE, SIZE, Bitmap.Config.ARGB_8888);
+        Drawable bubble = new BitmapDrawable(RuntimeEnvironment.application.getResources(), bitmap);
+        assertNull(cache.get(FIRST_RES, bubble, false, SIZE, DENSITY));
+        assertEquals(0, cache.getSizeBytes());
+    }
+
+    @Test
+    public void testSecondShowOfActionHitsCache() {
+        OverlayFixture fixture = OverlayFixture.detached(RuntimeEnvironment.application);
+        fixture.overlay.setRenderMode(BubbleActions.RENDER_MODE_CANVAS);
+        // shapes, bitmaps are not cached
+        fixture.bubbleActions.addAction("Star", R.drawable.bubble_actions_placeholder, callback)
+                .addAction("Share", R.drawable.bubble_actions_indicator, callback);
+        fixture.overlay.ensureBubbleViews(fixture.bubbleActions.numActions);
+        fixture.layout();
+
+        fixture.show();
+        fixture.animateHide();
+        fixture.overlay.resetBubbleViews();
+        assertEquals(0, cache.getHitCount());
+        assertEquals(2, cache.getMissCount());
+
+        fixture.show();
+        assertEquals(2, cache.getHitCount());
+        assertEquals(2, cache.getMissCount());
+        OverlayPool.release(fixture.root);
+    }
+}
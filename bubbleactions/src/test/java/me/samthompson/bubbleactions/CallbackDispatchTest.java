@@ -0,0 +1,171 @@
+package me.samthompson.bubbleactions;
+
+import android.app.Activity;
+import android.view.View;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks the order of drop, callback and the end of the hide animation for every way of
+ * dispatching callbacks.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 23)
+public class CallbackDispatchTest {
+
+    private OverlayFixture fixture;
+    private BubbleActionOverlay overlay;
+    private BubbleActions bubbleActions;
+    private final List<String> events = new ArrayList<>();
+    private final List<Runnable> executed = new ArrayList<>();
+
+    private final Callback callback = new Callback() {
+        @Override
+        public void doAction() {
+            events.add("callback");
+        }
+    };
+
+    private final BubbleActionOverlay.AnimationListener animationListener = new BubbleActionOverlay.AnimationListener() {
+        @Override
+        public void onShowAnimationEnd() {
+        }
+
+        @Override
+        public void onHideAnimationEnd() {
+            events.add("hidden");
+        }
+    };
+
+    private final Executor executor = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            executed.add(command);
+        }
+    };
+
+    @Before
+    public void setUp() {
+        // posted runnables only run when the test runs the main looper
+        Robolectric.getForegroundThreadScheduler().pause();
+
+        fixture = OverlayFixture.inActivity(Robolectric.setupActivity(Activity.class)).withActions(callback);
+        overlay = fixture.overlay;
+        bubbleActions = fixture.bubbleActions;
+        overlay.setAnimationListener(animationListener);
+    }
+
+    @After
+    public void tearDown() {
+        OverlayPool.release(fixture.root);
+    }
+
+    @Test
+    public void testOnDropCallsBackBeforeHiding() {
+        fixture.show();
+        fixture.drop(0);
+        assertEquals(Arrays.asList("callback"), events);
+
+        overlay.animateHide();
+        overlay.showAnimator.end();
+        assertEquals(Arrays.asList("callback", "hidden"), events);
+    }
+
+    @Test
+    public void testAfterHideFrameCallsBackAfterFirstFrame() {
+        bubbleActions.withCallbackDispatch(BubbleActions.CALLBACK_DISPATCH_AFTER_HIDE_FRAME);
+        fixture.show();
+        fixture.drop(0);
+        assertEquals(0, events.size());
+
+        overlay.animateHide();
+        overlay.showAnimator.setCurrentPlayTime(overlay.showAnimator.getDuration() / 2);
+        assertEquals(0, events.size());
+
+        // stop the animation from running further frames while the main looper runs, then move
+        // it to its last frame by hand
+        overlay.showAnimator.cancel();
+        ShadowLooper.idleMainLooper(overlay.showAnimator.getDuration());
+        assertEquals(Arrays.asList("callback"), events);
+
+        overlay.showAnimator.setCurrentPlayTime(overlay.showAnimator.getDuration());
+        assertEquals(Arrays.asList("callback", "hidden"), events);
+    }
+
+    @Test
+    public void testAfterHideFrameCallsBackBeforeHideEnds() {
+        bubbleActions.withCallbackDispatch(BubbleActions.CALLBACK_DISPATCH_AFTER_HIDE_FRAME);
+        fixture.show();
+        fixture.drop(0);
+
+        // the animation is ended before any frame is drawn
+        overlay.animateHide();
+        overlay.showAnimator.end();
+        assertEquals(Arrays.asList("callback", "hidden"), events);
+
+        // the posted runnable must not call back a second time
+        ShadowLooper.idleMainLooper(overlay.showAnimator.getDuration());
+        assertEquals(Arrays.asList("callback", "hidden"), events);
+    }
+
+    @Test
+    public void testAfterHideFrameCallsBackWhenRemovedEarly() {
+        bubbleActions.withCallbackDispatch(BubbleActions.CALLBACK_DISPATCH_AFTER_HIDE_FRAME);
+        fixture.show();
+        fixture.drop(0);
+
+        overlay.resetBubbleViews();
+        assertEquals(Arrays.asList("callback"), events);
+    }
+
+    @Test
+    public void testExecutorIsHandedCallback() {
+        bubbleActions.withCallbackExecutor(executor);
+        fixture.show();
+        fixture.drop(0);
+        assertEquals(1, executed.size());
+        assertEquals(0, events.size());
+
+        overlay.animateHide();
+        overlay.showAnimator.end();
+        overlay.resetBubbleViews();
+        executed.get(0).run();
+        assertEquals(Arrays.asList("hidden", "callback"), events);
+    }
+
+    @Test
+    public void testExecutorRunsCallbackAfterRelease() {
+        final List<View> views = new ArrayList<>();
+        ActionSet actionSet = new ActionSet.Builder(fixture.root.getContext())
+                .addAction("Star", android.R.drawable.star_on, new ContextCallback() {
+                    @Override
+                    public void doAction(ActionContext context) {
+                        views.add(context.getView());
+                    }
+                })
+                .build();
+        bubbleActions.withActions(actionSet).withCallbackExecutor(executor);
+        fixture.show();
+        fixture.drop(0);
+        assertEquals(1, executed.size());
+
+        // the window goes away before the executor gets to the callback
+        bubbleActions.release();
+        executed.get(0).run();
+        assertEquals(Arrays.asList(fixture.target), views);
+    }
+}
@@ -0,0 +1,341 @@
+package me.samthompson.bubbleactions;
+
+import android.animation.ValueAnimator;
+import android.content.ClipData;
+import android.content.ClipDescription;
+import android.content.Context;
+import android.os.SystemClock;
+import android.view.DragEvent;
+import android.view.MotionEvent;
+import android.view.View;
+import android.view.ViewConfiguration;
+import android.widget.FrameLayout;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+import static me.samthompson.bubbleactions.OverlayFixture.HEIGHT;
+import static me.samthompson.bubbleactions.OverlayFixture.WIDTH;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Hard budgets for the work done by one long press interaction: show, hover a bubble, drop on it
+ * and hide. The interaction is driven in process, with {@link BubbleActions#INPUT_MODE_TOUCH} or
+ * with drag events delivered by hand, so it runs without a window. If a change makes the long
+ * press path heavier, one of these budgets fails.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 23)
+public class InteractionBudgetTest {
+
+    private static final int NUM_ACTIONS = 3;
+
+    // the indicator, plus a label and an icon per bubble
+    private static final int FIRST_INTERACTION_INFLATIONS = 1 + 2 * NUM_ACTIONS;
+
+    // adding and removing the overlay, adding the bubble views joins the pass that is already requested
+    private static final int REQUEST_LAYOUTS = 2;
+
+    // the layout pass show() waits for
+    private static final int OVERLAY_MEASURES = 1;
+
+    // one animator per overlay and one per bubble view, all created on first use
+    private static final int ANIMATORS = 1 + NUM_ACTIONS;
+
+    // a steady state interaction allocates about 180 KB in either input mode, nearly all of it
+    // Robolectric working on behalf of the framework code it shadows, so a device allocates far
+    // less. The first interaction allocates over 5 MB.
+    private static final long ALLOCATED_BYTES = 200 * 1024;
+    private static final int WARMUP_INTERACTIONS = 5;
+    private static final int MEASURED_INTERACTIONS = 5;
+
+    private static final ClipData DRAG_DATA = DragUtils.getClipData();
+    private static final Method OBTAIN_DRAG_EVENT = findObtainDragEvent();
+
+    private CountingContext context;
+    private CountingRoot root;
+    private View target;
+    private int inputMode = BubbleActions.INPUT_MODE_TOUCH;
+    private int drops = 0;
+
+    private final Callback callback = new Callback() {
+        @Override
+        public void doAction() {
+            drops++;
+        }
+    };
+
+    private final View.OnLongClickListener longClickListener = new View.OnLongClickListener() {
+        @Override
+        public boolean onLongClick(View v) {
+            BubbleActions.on(v)
+                    .withInputMode(inputMode)
+                    .addAction("Star", android.R.drawable.star_on, callback)
+                    .addAction("Share", android.R.drawable.ic_menu_share, callback)
+                    .addAction("Hide", android.R.drawable.ic_delete, callback)
+                    .show();
+            return true;
+        }
+    };
+
+    @Before
+    public void setUp() {
+        context = new CountingContext(RuntimeEnvironment.application);
+        root = new CountingRoot(context);
+        target = new View(context);
+        target.setOnLongClickListener(longClickListener);
+        root.addView(target);
+        layoutRoot();
+        TouchTracker.track(target);
+    }
+
+    @After
+    public void tearDown() {
+        OverlayPool.release(root);
+    }
+
+    @Test
+    public void testInflationBudget() {
+        interact();
+        assertTrue("inflations: " + context.inflations, context.inflations <= FIRST_INTERACTION_INFLATIONS);
+        assertEquals(1, context.overlays);
+
+        // the overlay is pooled, later interactions must not inflate or construct anything
+        context.inflations = 0;
+        context.overlays = 0;
+        interact();
+        assertEquals(0, context.inflations);
+        assertEquals(0, context.overlays);
+    }
+
+    @Test
+    public void testPrewarmedInteractionInflatesNothing() {
+        OverlayPool.prewarm(root);
+
+        context.inflations = 0;
+        interact();
+        assertEquals(0, context.inflations);
+    }
+
+    @Test
+    public void testLayoutBudget() {
+        root.requestLayouts = 0;
+        interact();
+        assertTrue("requestLayout calls: " + root.requestLayouts, root.requestLayouts <= REQUEST_LAYOUTS);
+        assertTrue("overlay measures: " + root.overlayMeasures, root.overlayMeasures <= OVERLAY_MEASURES);
+
+        root.requestLayouts = 0;
+        root.overlayMeasures = 0;
+        interact();
+        assertTrue("requestLayout calls: " + root.requestLayouts, root.requestLayouts <= REQUEST_LAYOUTS);
+        assertTrue("overlay measures: " + root.overlayMeasures, root.overlayMeasures <= OVERLAY_MEASURES);
+    }
+
+    @Test
+    public void testAnimatorBudget() {
+        BubbleActionOverlay overlay = interact();
+        Set<ValueAnimator> animators = collectAnimators(overlay);
+        assertTrue("animators: " + animators.size(), animators.size() <= ANIMATORS);
+
+        // the same animators are reused for every interaction
+        interact();
+        assertEquals(animators, collectAnimators(overlay));
+    }
+
+    @Test
+    public void testAllocationBudget() {
+        long allocated = steadyStateAllocation();
+        assertTrue("allocated bytes: " + allocated, allocated <= ALLOCATED_BYTES);
+    }
+
+    @Test
+    public void testDragAndDropBudget() {
+        inputMode = BubbleActions.INPUT_MODE_DRAG_AND_DROP;
+        BubbleActionOverlay overlay = interact();
+        Set<ValueAnimator> animators = collectAnimators(overlay);
+
+        context.inflations = 0;
+        context.overlays = 0;
+        root.requestLayouts = 0;
+        root.overlayMeasures = 0;
+        interact();
+        assertEquals(0, context.inflations);
+        assertEquals(0, context.overlays);
+        assertTrue("requestLayout calls: " + root.requestLayouts, root.requestLayouts <= REQUEST_LAYOUTS);
+        assertTrue("overlay measures: " + root.overlayMeasures, root.overlayMeasures <= OVERLAY_MEASURES);
+        assertEquals(animators, collectAnimators(overlay));
+
+        long allocated = steadyStateAllocation();
+        assertTrue("allocated bytes: " + allocated, allocated <= ALLOCATED_BYTES);
+    }
+
+    /**
+     * @return the fewest bytes one interaction allocated after the warm-up, so one-off work of
+     * Robolectric or the JVM during a single interaction does not count
+     */
+    private long steadyStateAllocation() {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+
+        // the first interaction creates the overlay, the ones after it fill lazily grown caches
+        for (int i = 0; i < WARMUP_INTERACTIONS; i++) {
+            interact();
+        }
+
+        long fewest = Long.MAX_VALUE;
+        for (int i = 0; i < MEASURED_INTERACTIONS; i++) {
+            long before = threads.getThreadAllocatedBytes(threadId);
+            interact();
+            fewest = Math.min(fewest, threads.getThreadAllocatedBytes(threadId) - before);
+        }
+        return fewest;
+    }
+
+    /**
+     * Long press -> show -> hover the first bubble -> drop -> hide
+     *
+     * @return the overlay that was shown
+     */
+    private BubbleActionOverlay interact() {
+        int dropsBefore = drops;
+        touch(MotionEvent.ACTION_DOWN, WIDTH / 2, HEIGHT / 2);
+        Robolectric.getForegroundThreadScheduler().advanceBy(ViewConfiguration.getLongPressTimeout());
+
+        // the root is not attached to a window, so run the layout pass show() waits for by hand
+        layoutRoot();
+        BubbleActionOverlay overlay = (BubbleActionOverlay) root.getChildAt(1);
+        if (inputMode == BubbleActions.INPUT_MODE_TOUCH) {
+            touchGesture(overlay);
+        } else {
+            dragGesture(overlay);
+        }
+
+        assertEquals(dropsBefore + 1, drops);
+        assertEquals(null, overlay.getParent());
+        layoutRoot();
+        return overlay;
+    }
+
+    private void touchGesture(BubbleActionOverlay overlay) {
+        overlay.showAnimator.end();
+
+        float x = OverlayFixture.bubbleCenterX(overlay, 0);
+        float y = OverlayFixture.bubbleCenterY(overlay, 0);
+        touch(MotionEvent.ACTION_MOVE, x, y);
+        ((BubbleView) overlay.getChildAt(1)).selectAnimator.end();
+        touch(MotionEvent.ACTION_UP, x, y);
+        overlay.showAnimator.end();
+    }
+
+    /**
+     * Without a window the framework does not start the drag, so deliver its events to the overlay
+     * the way the window would.
+     */
+    private void dragGesture(BubbleActionOverlay overlay) {
+        drag(overlay, DragEvent.ACTION_DRAG_STARTED, 0, 0);
+        overlay.showAnimator.end();
+
+        float x = OverlayFixture.bubbleCenterX(overlay, 0);
+        float y = OverlayFixture.bubbleCenterY(overlay, 0);
+        drag(overlay, DragEvent.ACTION_DRAG_LOCATION, x, y);
+        ((BubbleView) overlay.getChildAt(1)).selectAnimator.end();
+        drag(overlay, DragEvent.ACTION_DROP, x, y);
+        drag(overlay, DragEvent.ACTION_DRAG_ENDED, x, y);
+        overlay.showAnimator.end();
+
+        // the gesture ends on the target, so the tracker does not keep the pointer down
+        touch(MotionEvent.ACTION_CANCEL, x, y);
+    }
+
+    private static void drag(View overlay, int action, float x, float y) {
+        DragEvent event;
+        try {
+            // DragEvent has no public factory
+            event = (DragEvent) OBTAIN_DRAG_EVENT.invoke(null, action, x, y, null, DRAG_DATA.getDescription(), DRAG_DATA, false);
+        } catch (IllegalAccessException | InvocationTargetException e) {
+            throw new AssertionError(e);
+        }
+        overlay.dispatchDragEvent(event);
+        event.recycle();
+    }
+
+    private void touch(int action, float x, float y) {
+        long now = SystemClock.uptimeMillis();
+        MotionEvent event = MotionEvent.obtain(now, now, action, x, y, 0);
+        // through the root, the overlay takes the gesture over from the target in touch mode
+        root.dispatchTouchEvent(event);
+        event.recycle();
+    }
+
+    private void layoutRoot() {
+        root.measure(View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(HEIGHT, View.MeasureSpec.EXACTLY));
+        root.layout(0, 0, WIDTH, HEIGHT);
+    }
+
+    private static Method findObtainDragEvent() {
+        try {
+            return DragEvent.class.getMethod("obtain", int.class, float.class, float.class, Object.class,
+                    ClipDescription.class, ClipData.class, boolean.class);
+        } catch (NoSuchMethodException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private static Set<ValueAnimator> collectAnimators(BubbleActionOverlay overlay) {
+        Set<ValueAnimator> animators = Collections.newSetFromMap(new IdentityHashMap<ValueAnimator, Boolean>());
+        animators.add(overlay.showAnimator);
+        if (overlay.canvasSelectAnimator != null) {
+            animators.add(overlay.canvasSelectAnimator);
+        }
+        for (int i = 0; i < overlay.getChildCount(); i++) {
+            View child = overlay.getChildAt(i);
+            if (child instanceof BubbleView) {
+                animators.add(((BubbleView) child).selectAnimator);
+            }
+        }
+        return animators;
+    }
+
+    /**
+     * Counts requestLayout calls reaching the root and how often the overlay is measured.
+     */
+    private static class CountingRoot extends FrameLayout {
+
+        int requestLayouts = 0;
+        int overlayMeasures = 0;
+
+        CountingRoot(Context context) {
+            super(context);
+        }
+
+        @Override
+        public void requestLayout() {
+            requestLayouts++;
+            super.requestLayout();
+        }
+
+        @Override
+        protected void measureChildWithMargins(View child, int parentWidthMeasureSpec, int widthUsed,
+                                               int parentHeightMeasureSpec, int heightUsed) {
+            if (child instanceof BubbleActionOverlay) {
+                overlayMeasures++;
+            }
+            super.measureChildWithMargins(child, parentWidthMeasureSpec, widthUsed, parentHeightMeasureSpec, heightUsed);
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package me.samthompson.bubbleactions;
+
+import android.app.Activity;
+import android.graphics.Point;
+import android.view.ContextThemeWrapper;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.FrameLayout;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.util.ActivityController;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+
+import static me.samthompson.bubbleactions.OverlayFixture.HEIGHT;
+import static me.samthompson.bubbleactions.OverlayFixture.WIDTH;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that BubbleActions kept in fields or closures do not keep destroyed activities alive.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 23)
+public class LeakTest {
+
+    private static final int ACTIVITIES = 10;
+    private static final int CYCLES_PER_ACTIVITY = 100;
+
+    // like an app that keeps the last BubbleActions it built in a field
+    private final List<BubbleActions> kept = new ArrayList<>();
+
+    private final TouchPointProvider center = new TouchPointProvider() {
+        @Override
+        public boolean getTouchPoint(View root, Point outPoint) {
+            outPoint.set(WIDTH / 2, HEIGHT / 2);
+            return true;
+        }
+    };
+
+    @Before
+    public void setUp() {
+        // lay windows out by hand, Robolectric would lay them out at zero size
+        Robolectric.getForegroundThreadScheduler().pause();
+    }
+
+    @Test
+    public void testNoActivityLeaksAfterRecreations() {
+        List<WeakReference<Activity>> destroyed = new ArrayList<>();
+        for (int i = 0; i < ACTIVITIES; i++) {
+            destroyed.add(showAndHideInNewActivity());
+        }
+
+        for (int i = 0; i < 20 && !allCleared(destroyed); i++) {
+            System.gc();
+            System.runFinalization();
+        }
+
+        for (int i = 0; i < destroyed.size(); i++) {
+            assertNull("activity " + i + " leaked", destroyed.get(i).get());
+        }
+        assertEquals(ACTIVITIES * CYCLES_PER_ACTIVITY, kept.size());
+    }
+
+    @Test
+    public void testReleasedInstanceIsNotShown() {
+        ActivityController<Activity> controller = Robolectric.buildActivity(Activity.class).create().start().resume().visible();
+        View target = addTarget(controller.get());
+        BubbleActions bubbleActions = BubbleActions.on(target)
+                .withInputMode(BubbleActions.INPUT_MODE_TOUCH)
+                .withTouchPointProvider(center)
+                .addAction("Star", android.R.drawable.star_on, new Callback() {
+                    @Override
+                    public void doAction() {
+                    }
+                });
+        bubbleActions.show();
+        layout(controller.get().getWindow().getDecorView());
+        destroy(controller);
+
+        assertFalse(bubbleActions.isShowing());
+        assertEquals(0, bubbleActions.numActions);
+        bubbleActions.show();
+        assertFalse(bubbleActions.isShowing());
+    }
+
+    @Test
+    public void testPooledOverlayIsKeptUntilRelease() {
+        ActivityController<Activity> controller = Robolectric.buildActivity(Activity.class).create().start().resume().visible();
+        addTarget(controller.get());
+        ViewGroup decorView = (ViewGroup) controller.get().getWindow().getDecorView();
+        WeakReference<BubbleActionOverlay> pooled = new WeakReference<>(OverlayPool.acquire(decorView));
+
+        // nothing but the pool refers to the overlay, it must still be handed out again
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            System.runFinalization();
+        }
+        assertSame(pooled.get(), OverlayPool.acquire(decorView));
+
+        destroy(controller);
+        assertFalse(OverlayPool.isPooled(decorView));
+    }
+
+    @Test
+    public void testDetachedRootIsReleasedWithItsActivity() {
+        ActivityController<Activity> controller = Robolectric.buildActivity(Activity.class).create().start().resume().visible();
+        // like the content of a dialog that is built but never shown
+        FrameLayout root = new FrameLayout(new ContextThemeWrapper(controller.get(), android.R.style.Theme_Dialog));
+        View target = new View(root.getContext());
+        root.addView(target);
+        BubbleActions bubbleActions = BubbleActions.on(target);
+        assertTrue(OverlayPool.isPooled(root));
+
+        destroy(controller);
+        assertFalse(OverlayPool.isPooled(root));
+        bubbleActions.show();
+        assertFalse(bubbleActions.isShowing());
+    }
+
+    @Test
+    public void testRootOfFinishingActivityIsNotPooled() {
+        ActivityController<Activity> controller = Robolectric.buildActivity(Activity.class).create();
+        FrameLayout root = new FrameLayout(controller.get());
+        controller.get().finish();
+
+        OverlayPool.prewarm(root);
+        assertFalse(OverlayPool.isPooled(root));
+        assertFalse(OverlayPool.offer(root, new BubbleActionOverlay(root.getContext())));
+        assertNotSame(OverlayPool.acquire(root), OverlayPool.acquire(root));
+        assertFalse(OverlayPool.isPooled(root));
+    }
+
+    private WeakReference<Activity> showAndHideInNewActivity() {
+        ActivityController<Activity> controller = Robolectric.buildActivity(Activity.class).create().start().resume().visible();
+        final Activity activity = controller.get();
+        View target = addTarget(activity);
+        ViewGroup decorView = (ViewGroup) activity.getWindow().getDecorView();
+
+        for (int i = 0; i < CYCLES_PER_ACTIVITY; i++) {
+            BubbleActions bubbleActions = BubbleActions.on(target)
+                    .withInputMode(BubbleActions.INPUT_MODE_TOUCH)
+                    .withTouchPointProvider(center)
+                    .addAction("Star", android.R.drawable.star_on, new Callback() {
+                        @Override
+                        public void doAction() {
+                            // the callback closes over the activity
+                            activity.setTitle("Starred");
+                        }
+                    });
+            kept.add(bubbleActions);
+
+            bubbleActions.show();
+            layout(decorView);
+            BubbleActionOverlay overlay = (BubbleActionOverlay) decorView.getChildAt(decorView.getChildCount() - 1);
+            overlay.showAnimator.end();
+
+            // the last instance is still on screen when the activity is destroyed
+            if (i < CYCLES_PER_ACTIVITY - 1) {
+                overlay.animateHide();
+                overlay.showAnimator.end();
+            }
+        }
+
+        destroy(controller);
+        return new WeakReference<>(activity);
+    }
+
+    private static View addTarget(Activity activity) {
+        FrameLayout content = new FrameLayout(activity);
+        View target = new View(activity);
+        content.addView(target);
+        activity.setContentView(content);
+        return target;
+    }
+
+    /**
+     * Destroy the activity and remove its window, in the order the framework does.
+     */
+    private static void destroy(ActivityController<Activity> controller) {
+        Activity activity = controller.get();
+        controller.pause().stop().destroy();
+        activity.getWindowManager().removeViewImmediate(activity.getWindow().getDecorView());
+        // pending traversals hold on to the window
+        Robolectric.getForegroundThreadScheduler().advanceToLastPostedRunnable();
+    }
+
+    private static void layout(View root) {
+        root.measure(View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(HEIGHT, View.MeasureSpec.EXACTLY));
+        root.layout(0, 0, WIDTH, HEIGHT);
+    }
+
+    private static boolean allCleared(List<WeakReference<Activity>> references) {
+        for (int i = 0; i < references.size(); i++) {
+            if (references.get(i).get() != null) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
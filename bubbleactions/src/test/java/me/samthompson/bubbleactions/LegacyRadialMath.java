@@ -0,0 +1,52 @@
+package me.samthompson.bubbleactions;
+
+/**
+ * The radial placement math that BubbleActionOverlay.setupOverlay used before RadialLayout,
+ * kept as a reference for tests and benchmarks.
+ */
+class LegacyRadialMath {
+
+    private LegacyRadialMath() {
+    }
+
+    /**
+     * @return false if there is no space on either side, otherwise fills the unit vectors per
+     * slot exactly as the old setupOverlay loop did
+     */
+    static boolean layout(float originX, float originY, float width, float height, int numActions,
+                          float stopDistance, float bubbleDimension, float[] unitX, float[] unitY) {
+        double angleDelta = Math.PI / (numActions + 1);
+        float requiredSpace = (float) Math.cos(angleDelta) * (stopDistance + bubbleDimension);
+        boolean leftOk = contains(width, height, originX - requiredSpace, originY);
+        boolean rightOk = contains(width, height, originX + requiredSpace, originY);
+
+        if (!leftOk && !rightOk) {
+            return false;
+        }
+
+        double startingAngle;
+        if (rightOk && leftOk) {
+            startingAngle = Math.PI + angleDelta;
+        } else if (rightOk) {
+            startingAngle = -Math.acos((0 - originX) / (stopDistance + bubbleDimension));
+        } else {
+            startingAngle = -Math.acos((width - originX) / (stopDistance + bubbleDimension)) - (numActions - 1) * angleDelta;
+        }
+
+        double angle = startingAngle;
+        int start = rightOk ? 0 : numActions - 1;
+        int end = rightOk ? numActions : -1;
+        int delta = rightOk ? 1 : -1;
+        for (int i = start; i != end; i += delta) {
+            unitX[i] = (float) Math.cos(angle);
+            unitY[i] = (float) Math.sin(angle);
+            angle += angleDelta;
+        }
+
+        return true;
+    }
+
+    private static boolean contains(float width, float height, float x, float y) {
+        return 0 < width && 0 < height && x >= 0 && x < width && y >= 0 && y < height;
+    }
+}
@@ -0,0 +1,232 @@
+package me.samthompson.bubbleactions;
+
+import android.os.SystemClock;
+import android.view.MotionEvent;
+import android.view.View;
+import android.view.ViewConfiguration;
+import android.widget.FrameLayout;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.util.Scheduler;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static me.samthompson.bubbleactions.OverlayFixture.HEIGHT;
+import static me.samthompson.bubbleactions.OverlayFixture.WIDTH;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that a held view gets its overlay set up shortly before the hold timeout, so only the
+ * animation is left when it is reached, that taps and scrolls undo the setup, and that the trigger
+ * neither disturbs other instances nor the view's own touch listener.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 23)
+public class LongPressTriggerTest {
+
+
+    private final Scheduler scheduler = Robolectric.getForegroundThreadScheduler();
+    private FrameLayout root;
+    private View target;
+    private LongPressTrigger trigger;
+    private BubbleActions created;
+    private ActionContent content;
+    private int provided = 0;
+
+    private final Callback callback = new Callback() {
+        @Override
+        public void doAction() {
+        }
+    };
+
+    private final ViewActionsProvider provider = new ViewActionsProvider() {
+        @Override
+        public boolean onCreateViewActions(BubbleActions bubbleActions, View view) {
+            provided++;
+            created = bubbleActions.withInputMode(BubbleActions.INPUT_MODE_TOUCH)
+                    .addAction("Star", android.R.drawable.star_on, callback)
+                    .addLazyAction("...", new ActionProvider() {
+                        @Override
+                        public void provideAction(ActionContent content) {
+                            LongPressTriggerTest.this.content = content;
+                        }
+                    }, callback);
+            return true;
+        }
+    };
+
+    @Before
+    public void setUp() {
+        scheduler.pause();
+        root = new FrameLayout(RuntimeEnvironment.application);
+        target = new View(RuntimeEnvironment.application);
+        root.addView(target);
+        root.measure(View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(HEIGHT, View.MeasureSpec.EXACTLY));
+        root.layout(0, 0, WIDTH, HEIGHT);
+        trigger = LongPressTrigger.attach(target, provider);
+    }
+
+    @After
+    public void tearDown() {
+        // end the gesture, the touch tracker is shared with other tests
+        touch(MotionEvent.ACTION_CANCEL, WIDTH / 2, HEIGHT / 2);
+        trigger.detach();
+        OverlayPool.release(root);
+    }
+
+    @Test
+    public void testOverlayIsSetUpWhileHeld() {
+        touch(MotionEvent.ACTION_DOWN, WIDTH / 2, HEIGHT / 2);
+        scheduler.advanceBy(setupDelay() - 1);
+        assertEquals(0, provided);
+        scheduler.advanceBy(1);
+        assertEquals(1, provided);
+        assertNotNull(content);
+        // set up, but not in the window yet
+        assertEquals(1, root.getChildCount());
+
+        scheduler.advanceBy(trigger.getHoldTimeout());
+        assertEquals(2, root.getChildCount());
+        BubbleActionOverlay overlay = (BubbleActionOverlay) root.getChildAt(1);
+        // the bubbles were animated in without waiting for a layout pass
+        assertTrue(root.isLayoutRequested());
+        assertEquals(View.VISIBLE, overlay.getChildAt(1).getVisibility());
+        overlay.showAnimator.end();
+        assertTrue(created.isShowing());
+
+        // the rest of the gesture goes to the overlay
+        touch(MotionEvent.ACTION_UP, WIDTH / 2, HEIGHT / 2);
+        overlay.showAnimator.end();
+        assertFalse(created.isShowing());
+        assertEquals(1, root.getChildCount());
+    }
+
+    @Test
+    public void testScrollUndoesSetup() {
+        touch(MotionEvent.ACTION_DOWN, WIDTH / 2, HEIGHT / 2);
+        scheduler.advanceBy(setupDelay());
+        int touchSlop = ViewConfiguration.get(target.getContext()).getScaledTouchSlop();
+        touch(MotionEvent.ACTION_MOVE, WIDTH / 2, HEIGHT / 2 + touchSlop + 1);
+        assertTrue(content.isCancelled());
+
+        scheduler.advanceBy(trigger.getHoldTimeout());
+        assertEquals(1, root.getChildCount());
+        assertFalse(created.isShowing());
+    }
+
+    @Test
+    public void testParentInterceptUndoesSetup() {
+        touch(MotionEvent.ACTION_DOWN, WIDTH / 2, HEIGHT / 2);
+        scheduler.advanceBy(setupDelay());
+        touch(MotionEvent.ACTION_CANCEL, WIDTH / 2, HEIGHT / 2);
+        assertTrue(content.isCancelled());
+
+        scheduler.advanceBy(trigger.getHoldTimeout());
+        assertEquals(1, root.getChildCount());
+    }
+
+    @Test
+    public void testQuickTapDoesNoSetup() {
+        touch(MotionEvent.ACTION_DOWN, WIDTH / 2, HEIGHT / 2);
+        touch(MotionEvent.ACTION_UP, WIDTH / 2, HEIGHT / 2);
+        scheduler.advanceBy(trigger.getHoldTimeout());
+        assertEquals(0, provided);
+        assertNull(created);
+        assertEquals(1, root.getChildCount());
+    }
+
+    @Test
+    public void testHoldTimeout() {
+        trigger.withHoldTimeout(100);
+        touch(MotionEvent.ACTION_DOWN, WIDTH / 2, HEIGHT / 2);
+        scheduler.advanceBy(99);
+        assertEquals(1, root.getChildCount());
+        scheduler.advanceBy(1);
+        assertEquals(2, root.getChildCount());
+    }
+
+    @Test
+    public void testUndoingSetupLeavesOverlayOfOtherInstance() {
+        touch(MotionEvent.ACTION_DOWN, WIDTH / 2, HEIGHT / 2);
+        scheduler.advanceBy(setupDelay());
+
+        // another view of the root is shown with the pooled overlay the setup was done on
+        View other = new View(RuntimeEnvironment.application);
+        root.addView(other);
+        BubbleActions shown = BubbleActions.on(other)
+                .withInputMode(BubbleActions.INPUT_MODE_TOUCH)
+                .addAction("Share", android.R.drawable.ic_menu_share, callback);
+        shown.show();
+        BubbleActionOverlay overlay = (BubbleActionOverlay) root.getChildAt(root.getChildCount() - 1);
+        overlay.showAnimator.end();
+
+        int touchSlop = ViewConfiguration.get(target.getContext()).getScaledTouchSlop();
+        touch(MotionEvent.ACTION_MOVE, WIDTH / 2, HEIGHT / 2 + touchSlop + 1);
+        assertTrue(content.isCancelled());
+        assertTrue(shown.isShowing());
+        assertTrue(overlay.isBoundTo(shown.actionContext));
+
+        // end the gesture the overlay took over
+        long now = SystemClock.uptimeMillis();
+        MotionEvent cancel = MotionEvent.obtain(now, now, MotionEvent.ACTION_CANCEL, WIDTH / 2, HEIGHT / 2, 0);
+        root.dispatchTouchEvent(cancel);
+        cancel.recycle();
+        overlay.showAnimator.end();
+        assertFalse(shown.isShowing());
+    }
+
+    @Test
+    public void testTouchListenerOfViewIsKept() {
+        trigger.detach();
+        final List<Integer> seen = new ArrayList<>();
+        View.OnTouchListener listener = new View.OnTouchListener() {
+            @Override
+            public boolean onTouch(View v, MotionEvent event) {
+                seen.add(event.getActionMasked());
+                return false;
+            }
+        };
+        target.setOnTouchListener(listener);
+        trigger = LongPressTrigger.attach(target, provider);
+
+        touch(MotionEvent.ACTION_DOWN, WIDTH / 2, HEIGHT / 2);
+        touch(MotionEvent.ACTION_UP, WIDTH / 2, HEIGHT / 2);
+        assertEquals(Arrays.asList(MotionEvent.ACTION_DOWN, MotionEvent.ACTION_UP), seen);
+
+        trigger.detach();
+        touch(MotionEvent.ACTION_DOWN, WIDTH / 2, HEIGHT / 2);
+        scheduler.advanceBy(trigger.getHoldTimeout());
+        assertEquals(3, seen.size());
+        assertEquals(0, provided);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeHoldTimeoutThrows() {
+        trigger.withHoldTimeout(-1);
+    }
+
+    private int setupDelay() {
+        return trigger.getHoldTimeout() - trigger.getHoldTimeout() / 4;
+    }
+
+    private void touch(int action, float x, float y) {
+        long now = SystemClock.uptimeMillis();
+        MotionEvent event = MotionEvent.obtain(now, now, action, x, y, 0);
+        target.dispatchTouchEvent(event);
+        event.recycle();
+    }
+}
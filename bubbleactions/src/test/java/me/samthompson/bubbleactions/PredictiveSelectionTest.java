@@ -0,0 +1,172 @@
+package me.samthompson.bubbleactions;
+
+import android.app.Activity;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.util.Scheduler;
+
+import static me.samthompson.bubbleactions.OverlayFixture.ORIGIN_X;
+import static me.samthompson.bubbleactions.OverlayFixture.ORIGIN_Y;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that a fast, straight drag highlights its bubble before the finger reaches it, that a
+ * drag that turns away undoes the highlight, and that only the bubble under the finger is dropped
+ * on.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 23)
+public class PredictiveSelectionTest {
+
+    // about 0.6 dp per millisecond, a quick flick
+    private static final float STEP_DP = 5;
+    private static final int STEP_MILLIS = 8;
+
+    private final Scheduler scheduler = Robolectric.getForegroundThreadScheduler();
+    private OverlayFixture fixture;
+    private BubbleActionOverlay overlay;
+    private BubbleActions bubbleActions;
+    private int called = 0;
+    private float fingerX;
+    private float fingerY;
+
+    private final Callback callback = new Callback() {
+        @Override
+        public void doAction() {
+            called++;
+        }
+    };
+
+    private final MetricsListener metricsListener = new MetricsListener() {
+        @Override
+        public void onInteractionMetrics(InteractionMetrics metrics) {
+        }
+    };
+
+    @Before
+    public void setUp() {
+        // the predictor reads the uptime clock, which only moves when the scheduler is advanced
+        scheduler.pause();
+
+        fixture = OverlayFixture.inActivity(Robolectric.setupActivity(Activity.class)).withActions(callback);
+        overlay = fixture.overlay;
+        bubbleActions = fixture.bubbleActions.withMetricsListener(metricsListener);
+    }
+
+    @After
+    public void tearDown() {
+        OverlayPool.release(fixture.root);
+    }
+
+    @Test
+    public void testStraightDragHighlightsEarly() {
+        bubbleActions.withPredictiveSelection(0.5f);
+        show();
+
+        dragTowards(0, 5);
+        assertTrue(isHighlighted(0));
+        assertFalse(isHighlighted(1));
+        assertEquals(1, bubbleActions.metrics.getPredictionCount());
+
+        // the finger has not reached the bubble, so nothing is dropped on
+        overlay.dropOnHoveredSlot();
+        assertEquals(0, called);
+
+        dragTowards(0, 100);
+        assertTrue(isHighlighted(0));
+        overlay.dropOnHoveredSlot();
+        assertEquals(1, called);
+        assertEquals(0, bubbleActions.metrics.getMispredictionCount());
+    }
+
+    @Test
+    public void testTurningAwayUndoesHighlight() {
+        bubbleActions.withPredictiveSelection(0.5f);
+        show();
+
+        dragTowards(0, 5);
+        assertTrue(isHighlighted(0));
+
+        dragTowards(2, 3);
+        assertFalse(isHighlighted(0));
+        assertEquals(1, bubbleActions.metrics.getMispredictionCount());
+
+        dragTowards(2, 100);
+        assertTrue(isHighlighted(2));
+
+        overlay.dropOnHoveredSlot();
+        assertEquals(1, called);
+    }
+
+    @Test
+    public void testOffByDefault() {
+        show();
+
+        dragTowards(0, 5);
+        assertFalse(isHighlighted(0));
+        assertEquals(0, bubbleActions.metrics.getPredictionCount());
+    }
+
+    @Test
+    public void testLeavingClearsPrediction() {
+        bubbleActions.withPredictiveSelection(0.5f);
+        show();
+
+        dragTowards(0, 5);
+        overlay.clearHover();
+        assertFalse(isHighlighted(0));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testConfidenceAboveOneThrows() {
+        bubbleActions.withPredictiveSelection(1.5f);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNanConfidenceThrows() {
+        bubbleActions.withPredictiveSelection(Float.NaN);
+    }
+
+    private void show() {
+        fixture.show();
+        fingerX = ORIGIN_X;
+        fingerY = ORIGIN_Y;
+        overlay.onDragLocation(fingerX, fingerY);
+    }
+
+    /**
+     * Move the finger in a straight line towards the center of a bubble, one sample every few
+     * milliseconds, stopping after a number of steps or at the center.
+     */
+    private void dragTowards(int slot, int steps) {
+        float toX = OverlayFixture.bubbleCenterX(overlay, slot);
+        float toY = OverlayFixture.bubbleCenterY(overlay, slot);
+        float stepLength = STEP_DP * overlay.getResources().getDisplayMetrics().density;
+        for (int i = 0; i < steps; i++) {
+            float dx = toX - fingerX;
+            float dy = toY - fingerY;
+            float distance = (float) Math.sqrt(dx * dx + dy * dy);
+            if (distance == 0f) {
+                return;
+            }
+
+            float step = Math.min(stepLength, distance);
+            scheduler.advanceBy(STEP_MILLIS);
+            fingerX += dx * step / distance;
+            fingerY += dy * step / distance;
+            overlay.onDragLocation(fingerX, fingerY);
+        }
+    }
+
+    private boolean isHighlighted(int slot) {
+        return fixture.bubbleView(slot).imageView.isSelected();
+    }
+}
@@ -0,0 +1,131 @@
+package me.samthompson.bubbleactions;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class RadialLayoutTest {
+
+    // the legacy math only supported a single ring
+    private static final int MAX_ACTIONS = RadialLayout.INNER_RING_CAPACITY;
+    private static final float WIDTH = 1080;
+    private static final float HEIGHT = 1920;
+    private static final float STOP_DISTANCE = 288;
+    private static final float BUBBLE_DIMENSION = 156;
+    private static final float EPSILON = 1e-5f;
+
+    private static final float START_DISTANCE = 168;
+
+    private final RadialLayout layout = new RadialLayout(START_DISTANCE, STOP_DISTANCE, BUBBLE_DIMENSION);
+
+    @Test
+    public void testMatchesLegacyMath() {
+        Random random = new Random(42);
+        int[] sides = new int[4];
+        for (int trial = 0; trial < 10000; trial++) {
+            int numActions = 1 + random.nextInt(MAX_ACTIONS);
+            float originX = random.nextFloat() * WIDTH;
+            float originY = random.nextFloat() * HEIGHT;
+            sides[assertSameAsLegacy(originX, originY, numActions)]++;
+        }
+
+        // make sure every branch was exercised
+        assertTrue(sides[RadialLayout.SIDE_BOTH] > 0);
+        assertTrue(sides[RadialLayout.SIDE_LEFT] > 0);
+        assertTrue(sides[RadialLayout.SIDE_RIGHT] > 0);
+    }
+
+    @Test
+    public void testLeftEdgeFansRight() {
+        assertEquals(RadialLayout.SIDE_RIGHT, assertSameAsLegacy(10, HEIGHT / 2, 3));
+    }
+
+    @Test
+    public void testRightEdgeFansLeft() {
+        assertEquals(RadialLayout.SIDE_LEFT, assertSameAsLegacy(WIDTH - 10, HEIGHT / 2, 3));
+    }
+
+    @Test
+    public void testNoSpace() {
+        RadialLayout tooWide = new RadialLayout(START_DISTANCE, WIDTH, BUBBLE_DIMENSION);
+        assertEquals(RadialLayout.SIDE_NONE, tooWide.layout(WIDTH / 2, HEIGHT / 2, 0, 0, WIDTH, HEIGHT, 3));
+    }
+
+    @Test
+    public void testLargeCountsUseTwoRings() {
+        for (int numActions = MAX_ACTIONS + 1; numActions <= RadialLayout.MAX_ACTIONS; numActions++) {
+            assertEquals(RadialLayout.SIDE_BOTH, layout.layout(WIDTH / 2, HEIGHT / 2, 0, 0, WIDTH, HEIGHT, numActions));
+
+            int inner = 0;
+            boolean[] seen = new boolean[numActions];
+            for (int i = 0; i < numActions; i++) {
+                if (layout.slotRing[i] == 0) {
+                    inner++;
+                }
+                seen[layout.slotAction[i]] = true;
+            }
+
+            assertTrue(inner <= RadialLayout.INNER_RING_CAPACITY);
+            assertTrue(numActions - inner <= RadialLayout.OUTER_RING_CAPACITY);
+            for (boolean actionSeen : seen) {
+                assertTrue(actionSeen);
+            }
+        }
+    }
+
+    @Test
+    public void testOuterRingIsFurtherOut() {
+        assertEquals(STOP_DISTANCE + BUBBLE_DIMENSION, layout.getStopDistance(1), EPSILON);
+        assertEquals(START_DISTANCE + BUBBLE_DIMENSION, layout.getStartDistance(1), EPSILON);
+    }
+
+    @Test
+    public void testHitTestFindsEverySlot() {
+        Random random = new Random(3);
+        for (int trial = 0; trial < 10000; trial++) {
+            int numActions = 1 + random.nextInt(RadialLayout.MAX_ACTIONS);
+            float originX = random.nextFloat() * WIDTH;
+            float originY = random.nextFloat() * HEIGHT;
+            if (layout.layout(originX, originY, 0, 0, WIDTH, HEIGHT, numActions) == RadialLayout.SIDE_NONE) {
+                continue;
+            }
+
+            for (int i = 0; i < numActions; i++) {
+                float stopDistance = layout.getStopDistance(layout.slotRing[i]);
+                float x = layout.unitX[i] * stopDistance;
+                float y = layout.unitY[i] * stopDistance;
+                assertEquals(i, layout.hitTest(x, y));
+            }
+        }
+    }
+
+    @Test
+    public void testHitTestMissesOrigin() {
+        layout.layout(WIDTH / 2, HEIGHT / 2, 0, 0, WIDTH, HEIGHT, 3);
+        assertEquals(-1, layout.hitTest(0, 0));
+        assertEquals(-1, layout.hitTest(0, STOP_DISTANCE));
+        assertEquals(-1, layout.hitTest(0, -STOP_DISTANCE - 2 * BUBBLE_DIMENSION));
+    }
+
+    private int assertSameAsLegacy(float originX, float originY, int numActions) {
+        float[] legacyX = new float[numActions];
+        float[] legacyY = new float[numActions];
+
+        int side = layout.layout(originX, originY, 0, 0, WIDTH, HEIGHT, numActions);
+        boolean legacyOk = LegacyRadialMath.layout(originX, originY, WIDTH, HEIGHT, numActions,
+                STOP_DISTANCE, BUBBLE_DIMENSION, legacyX, legacyY);
+
+        assertEquals(legacyOk, side != RadialLayout.SIDE_NONE);
+        for (int i = 0; legacyOk && i < numActions; i++) {
+            assertEquals(legacyX[i], layout.unitX[i], EPSILON);
+            assertEquals(legacyY[i], layout.unitY[i], EPSILON);
+            assertEquals(0, layout.slotRing[i]);
+            int expectedAction = side == RadialLayout.SIDE_LEFT ? numActions - 1 - i : i;
+            assertEquals(expectedAction, layout.slotAction[i]);
+        }
+        return side;
+    }
+}
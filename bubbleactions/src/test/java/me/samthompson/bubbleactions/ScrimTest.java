@@ -0,0 +1,33 @@
+package me.samthompson.bubbleactions;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ScrimTest {
+
+    private static final int TRANSPARENT = 0x00000000;
+    private static final int DARKENED = 0x77000000;
+
+    @Test
+    public void testBlendEndpoints() {
+        assertEquals(TRANSPARENT, Scrim.blendArgb(TRANSPARENT, DARKENED, 0f));
+        assertEquals(DARKENED, Scrim.blendArgb(TRANSPARENT, DARKENED, 1f));
+        assertEquals(0x7fff007f, Scrim.blendArgb(0x00ff0000, 0xffff00ff, 0.5f));
+    }
+
+    @Test
+    public void testOnlyReportsChangedColors() {
+        Scrim scrim = new Scrim(TRANSPARENT, DARKENED);
+        assertFalse(scrim.setFraction(0f));
+        assertTrue(scrim.setFraction(0.5f));
+
+        // 0x77 alpha levels over the whole range, so tiny steps blend to the same color
+        assertFalse(scrim.setFraction(0.5001f));
+        assertEquals(0.5001f, scrim.getFraction(), 0f);
+        assertTrue(scrim.setFraction(1f));
+        assertEquals(DARKENED, scrim.getColor());
+    }
+}
@@ -0,0 +1,34 @@
+package me.samthompson.bubbleactions;
+
+import android.content.Context;
+import android.view.accessibility.AccessibilityManager;
+
+import org.robolectric.annotation.Implementation;
+import org.robolectric.annotation.Implements;
+import org.robolectric.annotation.Resetter;
+import org.robolectric.shadows.ShadowAccessibilityManager;
+
+/**
+ * Robolectric creates a new AccessibilityManager, which registers new content observers, every
+ * time one is requested. Views request one whenever they are added or removed, so without a single
+ * instance every interaction would allocate more than the last. Installed for every test by
+ * robolectric.properties.
+ */
+@Implements(AccessibilityManager.class)
+public class ShadowSingleAccessibilityManager extends ShadowAccessibilityManager {
+
+    private static AccessibilityManager instance;
+
+    @Implementation
+    public static AccessibilityManager getInstance(Context context) throws Exception {
+        if (instance == null) {
+            instance = ShadowAccessibilityManager.getInstance(context);
+        }
+        return instance;
+    }
+
+    @Resetter
+    public static void reset() {
+        instance = null;
+    }
+}
@@ -0,0 +1,108 @@
+package me.samthompson.bubbleactions;
+
+import android.app.Activity;
+import android.graphics.Typeface;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks that bubble slots are measured exactly from their labels, so bubbles are positioned
+ * correctly before their views are laid out.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 23)
+public class SlotMeasurerTest {
+
+    private Activity activity;
+    private OverlayFixture fixture;
+    private BubbleActionOverlay overlay;
+    private BubbleActions bubbleActions;
+
+    private final Callback callback = new Callback() {
+        @Override
+        public void doAction() {
+        }
+    };
+
+    @Before
+    public void setUp() {
+        Robolectric.getForegroundThreadScheduler().pause();
+
+        activity = Robolectric.setupActivity(Activity.class);
+        fixture = OverlayFixture.detached(activity);
+        overlay = fixture.overlay;
+        bubbleActions = fixture.bubbleActions
+                .addAction("A", android.R.drawable.star_on, callback)
+                .addAction("Much longer", android.R.drawable.ic_menu_share, callback)
+                .addAction("", android.R.drawable.ic_delete, callback);
+        fixture.layout();
+    }
+
+    @After
+    public void tearDown() {
+        OverlayPool.release(fixture.root);
+    }
+
+    @Test
+    public void testBubblesArePositionedBeforeLayout() {
+        // the bubble views are added and bound to their labels without being laid out
+        overlay.ensureBubbleViews(bubbleActions.numActions);
+        fixture.setup();
+        float[] translationX = new float[bubbleActions.numActions];
+        float[] translationY = new float[bubbleActions.numActions];
+        for (int i = 0; i < bubbleActions.numActions; i++) {
+            translationX[i] = fixture.bubbleView(i).getTranslationX();
+            translationY[i] = fixture.bubbleView(i).getTranslationY();
+        }
+
+        fixture.layout();
+        SlotMeasurer measurer = new SlotMeasurer(activity.getResources());
+        for (int i = 0; i < bubbleActions.numActions; i++) {
+            BubbleView bubbleView = fixture.bubbleView(i);
+            Action action = findAction(bubbleView.textView.getText());
+            assertEquals(measurer.getSlotWidth(action), bubbleView.getWidth(), 0f);
+            assertEquals(measurer.getSlotHeight(), bubbleView.getHeight(), 0f);
+            assertEquals(translationX[i], bubbleView.getTranslationX(), 0f);
+            assertEquals(translationY[i], bubbleView.getTranslationY(), 0f);
+        }
+    }
+
+    @Test
+    public void testLabelWidthIsCachedByLabelAndTypeface() {
+        SlotMeasurer measurer = new SlotMeasurer(activity.getResources());
+        Action action = bubbleActions.actions[1];
+        float width = measurer.getLabelWidth(action);
+        assertEquals(0f, measurer.getLabelWidth(bubbleActions.actions[2]), 0f);
+        assertEquals(1, measurer.labelWidths.size());
+
+        // an equal label of another action is not measured again
+        Action sameLabel = new Action(new String("Much longer"), action.bubble, callback);
+        assertEquals(width, measurer.getLabelWidth(sameLabel), 0f);
+        assertEquals(1, measurer.labelWidths.size());
+
+        // another typeface is measured again
+        measurer.setTypeface(Typeface.MONOSPACE);
+        measurer.getLabelWidth(action);
+        assertEquals(2, measurer.labelWidths.size());
+    }
+
+    private Action findAction(CharSequence label) {
+        for (int i = 0; i < bubbleActions.numActions; i++) {
+            // labels are cut off by the maxLength of their TextView
+            CharSequence name = bubbleActions.actions[i].actionName;
+            if (name.subSequence(0, SlotMeasurer.getLabelLength(name)).toString().equals(label.toString())) {
+                return bubbleActions.actions[i];
+            }
+        }
+        throw new AssertionError("no action with label " + label);
+    }
+
+}
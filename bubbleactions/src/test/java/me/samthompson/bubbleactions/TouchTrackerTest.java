@@ -0,0 +1,233 @@
+package me.samthompson.bubbleactions;
+
+import android.app.Activity;
+import android.content.Context;
+import android.graphics.Point;
+import android.os.SystemClock;
+import android.view.MotionEvent;
+import android.view.View;
+import android.view.ViewConfiguration;
+import android.view.ViewGroup;
+import android.widget.FrameLayout;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static me.samthompson.bubbleactions.OverlayFixture.HEIGHT;
+import static me.samthompson.bubbleactions.OverlayFixture.WIDTH;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that a gesture whose session ended early does not leave its coordinates behind for the
+ * next BubbleActions shown from another view. The roots are not attached to a window, so without
+ * a tracked pointer no touch point can be found and nothing may be shown. Also checks that a
+ * session takes the gesture over without replacing the touch listener of the view.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 23)
+public class TouchTrackerTest {
+
+    private InterceptingRoot root;
+    private View target;
+    private FrameLayout otherRoot;
+    private View otherTarget;
+
+    private final Callback callback = new Callback() {
+        @Override
+        public void doAction() {
+        }
+    };
+
+    private final TouchPointProvider center = new TouchPointProvider() {
+        @Override
+        public boolean getTouchPoint(View root, Point outPoint) {
+            outPoint.set(WIDTH / 2, HEIGHT / 2);
+            return true;
+        }
+    };
+
+    private final View.OnLongClickListener longClickListener = new View.OnLongClickListener() {
+        @Override
+        public boolean onLongClick(View v) {
+            show(v);
+            return true;
+        }
+    };
+
+    @Before
+    public void setUp() {
+        Context context = RuntimeEnvironment.application;
+        root = new InterceptingRoot(context);
+        target = new View(context);
+        target.setOnLongClickListener(longClickListener);
+        root.addView(target);
+        layout(root);
+        TouchTracker.track(target);
+
+        otherRoot = new FrameLayout(context);
+        otherTarget = new View(context);
+        otherRoot.addView(otherTarget);
+        layout(otherRoot);
+    }
+
+    @After
+    public void tearDown() {
+        OverlayPool.releaseRoot(root);
+        OverlayPool.releaseRoot(otherRoot);
+    }
+
+    @Test
+    public void testInterceptedCancelThenShowFromOtherView() {
+        BubbleActionOverlay overlay = longPress();
+
+        // a parent that ignores requestDisallowInterceptTouchEvent takes over the gesture
+        root.intercept = true;
+        touch(MotionEvent.ACTION_MOVE);
+        overlay.showAnimator.end();
+        assertNull(overlay.getParent());
+
+        assertNotShown(show(otherTarget));
+    }
+
+    @Test
+    public void testReleaseMidGestureThenShowFromOtherView() {
+        longPress();
+
+        // the window goes away while the finger is down, the target never sees the up event
+        OverlayPool.releaseRoot(root);
+
+        assertNotShown(show(otherTarget));
+    }
+
+    @Test
+    public void testTouchListenerOfViewIsKept() {
+        final List<Integer> seen = new ArrayList<>();
+        target.setOnTouchListener(new View.OnTouchListener() {
+            @Override
+            public boolean onTouch(View v, MotionEvent event) {
+                seen.add(event.getActionMasked());
+                return false;
+            }
+        });
+        target.setOnLongClickListener(new View.OnLongClickListener() {
+            @Override
+            public boolean onLongClick(View v) {
+                BubbleActions.on(v)
+                        .withInputMode(BubbleActions.INPUT_MODE_TOUCH)
+                        .withTouchPointProvider(center)
+                        .addAction("Star", android.R.drawable.star_on, callback)
+                        .show();
+                return true;
+            }
+        });
+
+        BubbleActionOverlay overlay = longPress();
+        // the overlay took the gesture over, the target only sees it cancelled
+        touch(MotionEvent.ACTION_MOVE);
+        touch(MotionEvent.ACTION_UP);
+        overlay.showAnimator.end();
+        assertNull(overlay.getParent());
+        assertEquals(Arrays.asList(MotionEvent.ACTION_DOWN, MotionEvent.ACTION_CANCEL), seen);
+
+        touch(MotionEvent.ACTION_DOWN);
+        touch(MotionEvent.ACTION_UP);
+        assertEquals(Arrays.asList(MotionEvent.ACTION_DOWN, MotionEvent.ACTION_CANCEL,
+                MotionEvent.ACTION_DOWN, MotionEvent.ACTION_UP), seen);
+    }
+
+    @Test
+    public void testTouchPointIsRecordedInRootWithoutTracking() {
+        // lay the window out by hand, Robolectric would lay it out at zero size
+        Robolectric.getForegroundThreadScheduler().pause();
+        Activity activity = Robolectric.buildActivity(Activity.class).create().start().resume().visible().get();
+        View untracked = new View(activity);
+        activity.setContentView(untracked);
+        ViewGroup decorView = (ViewGroup) activity.getWindow().getDecorView();
+        // the first traversal attaches the window
+        Robolectric.getForegroundThreadScheduler().advanceToLastPostedRunnable();
+
+        BubbleActions.on(untracked);
+        layout(decorView);
+        long now = SystemClock.uptimeMillis();
+        MotionEvent down = MotionEvent.obtain(now, now, MotionEvent.ACTION_DOWN, 300, 400, 0);
+        decorView.dispatchTouchEvent(down);
+        down.recycle();
+
+        Point touchPoint = new Point();
+        assertTrue(TouchTracker.getInstance().getTouchPoint(decorView, touchPoint));
+        assertEquals(new Point(300, 400), touchPoint);
+        OverlayPool.releaseRoot(decorView);
+    }
+
+    private BubbleActionOverlay longPress() {
+        touch(MotionEvent.ACTION_DOWN);
+        Robolectric.getForegroundThreadScheduler().advanceBy(ViewConfiguration.getLongPressTimeout());
+
+        // the root is not attached to a window, so run the layout pass show() waits for by hand
+        layout(root);
+        BubbleActionOverlay overlay = (BubbleActionOverlay) root.getChildAt(1);
+        overlay.showAnimator.end();
+        return overlay;
+    }
+
+    private BubbleActions show(View view) {
+        BubbleActions bubbleActions = BubbleActions.on(view)
+                .withInputMode(BubbleActions.INPUT_MODE_TOUCH)
+                .addAction("Star", android.R.drawable.star_on, callback);
+        bubbleActions.show();
+        layout((View) view.getParent());
+        return bubbleActions;
+    }
+
+    private void assertNotShown(BubbleActions bubbleActions) {
+        assertFalse(bubbleActions.isShowing());
+        assertEquals(1, otherRoot.getChildCount());
+    }
+
+    private void touch(int action) {
+        long now = SystemClock.uptimeMillis();
+        MotionEvent event = MotionEvent.obtain(now, now, action, WIDTH / 2, HEIGHT / 2, 0);
+        root.dispatchTouchEvent(event);
+        event.recycle();
+    }
+
+    private static void layout(View root) {
+        root.measure(View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(HEIGHT, View.MeasureSpec.EXACTLY));
+        root.layout(0, 0, WIDTH, HEIGHT);
+    }
+
+    /**
+     * Intercepts the gesture once told to, whatever its children ask for.
+     */
+    private static class InterceptingRoot extends FrameLayout {
+
+        boolean intercept = false;
+
+        InterceptingRoot(Context context) {
+            super(context);
+        }
+
+        @Override
+        public void requestDisallowInterceptTouchEvent(boolean disallowIntercept) {
+        }
+
+        @Override
+        public boolean onInterceptTouchEvent(MotionEvent ev) {
+            return intercept;
+        }
+    }
+}